@@ -0,0 +1,290 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Microbenchmarks for each phase of both analyses, run the way JMH runs them: timed
+// warm-up iterations first, then measurement iterations reported as ops/s with the
+// spread between iterations, plus the bytes allocated per op (what JMH's gc profiler
+// reports as gc.alloc.rate.norm). Setup work for an op is never timed.
+//
+// Usage: java AnalysisBenchmark [lir files or directories]... [--synthetic=blocks,...]
+//        [--warmup=n] [--iterations=n] [--time=ms] [--only=phase,...] [--engine=dense|sparse]
+//        [LirGenerator options]
+// Without files the NPSGF directory is used. Synthetic inputs come from LirGenerator,
+// so they are the same program on every run for the same options.
+public class AnalysisBenchmark {
+
+    static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+    static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    // Reaching-definitions engine of the rdef phases
+    static DataFlowRdef.Engine engine = DataFlowRdef.Engine.DENSE;
+
+    static class Input {
+        final String name;
+        final String path;
+        final LirModule module;
+
+        Input(String name, String path) throws IOException {
+            this.name = name;
+            this.path = path;
+            this.module = LirModule.parse(path);
+        }
+    }
+
+    // One benchmarked phase: setup prepares an op outside the timer, run is timed
+    abstract static class Phase<T> {
+        final String name;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        abstract T setup(Input input);
+
+        abstract void run(T state) throws IOException;
+    }
+
+    static List<Phase<?>> phases() {
+        List<Phase<?>> phases = new ArrayList<>();
+        phases.add(new Phase<Input>("parse") {
+            Input setup(Input input) {
+                return input;
+            }
+
+            void run(Input input) throws IOException {
+                LirModule.parse(input.path);
+            }
+        });
+        phases.add(new Phase<List<DataFlowRdef>>("reachableTypes") {
+            List<DataFlowRdef> setup(Input input) {
+                List<DataFlowRdef> analyzers = rdefAnalyzers(input);
+                for (DataFlowRdef analyzer : analyzers) {
+                    analyzer.loadFunction();
+                }
+                // Measure the closure itself, not a cache hit
+                TypeClosure.clearCache();
+                return analyzers;
+            }
+
+            void run(List<DataFlowRdef> analyzers) {
+                for (DataFlowRdef analyzer : analyzers) {
+                    analyzer.calculateReachableTypes();
+                }
+            }
+        });
+        phases.add(new Phase<List<DataFlowRdef>>("fixpoint") {
+            List<DataFlowRdef> setup(Input input) {
+                List<DataFlowRdef> analyzers = rdefAnalyzers(input);
+                for (DataFlowRdef analyzer : analyzers) {
+                    analyzer.loadFunction();
+                    analyzer.calculateReachableTypes();
+                }
+                return analyzers;
+            }
+
+            void run(List<DataFlowRdef> analyzers) {
+                for (DataFlowRdef analyzer : analyzers) {
+                    analyzer.solve();
+                }
+            }
+        });
+        phases.add(new Phase<List<DataFlowRdef>>("output") {
+            List<DataFlowRdef> setup(Input input) {
+                List<DataFlowRdef> analyzers = rdefAnalyzers(input);
+                for (DataFlowRdef analyzer : analyzers) {
+                    analyzer.loadFunction();
+                    analyzer.calculateReachableTypes();
+                    analyzer.solve();
+                }
+                return analyzers;
+            }
+
+            void run(List<DataFlowRdef> analyzers) {
+                for (DataFlowRdef analyzer : analyzers) {
+                    analyzer.printAnalysisResults();
+                }
+            }
+        });
+        phases.add(new Phase<List<DataFlowControl>>("dominators") {
+            List<DataFlowControl> setup(Input input) {
+                List<DataFlowControl> analyzers = controlAnalyzers(input);
+                for (DataFlowControl analyzer : analyzers) {
+                    analyzer.loadFunction();
+                    analyzer.computePredecessors();
+                }
+                return analyzers;
+            }
+
+            void run(List<DataFlowControl> analyzers) {
+                for (DataFlowControl analyzer : analyzers) {
+                    analyzer.computeDominators();
+                }
+            }
+        });
+        phases.add(new Phase<List<DataFlowControl>>("frontier") {
+            List<DataFlowControl> setup(Input input) {
+                List<DataFlowControl> analyzers = controlAnalyzers(input);
+                for (DataFlowControl analyzer : analyzers) {
+                    analyzer.loadFunction();
+                    analyzer.computePredecessors();
+                    analyzer.computeDominators();
+                }
+                return analyzers;
+            }
+
+            void run(List<DataFlowControl> analyzers) {
+                for (DataFlowControl analyzer : analyzers) {
+                    analyzer.computeDominanceFrontiers();
+                }
+            }
+        });
+        return phases;
+    }
+
+    static List<DataFlowRdef> rdefAnalyzers(Input input) {
+        List<DataFlowRdef> analyzers = new ArrayList<>();
+        for (LirModule.Function function : input.module.getFunctions()) {
+            DataFlowRdef analyzer = new DataFlowRdef(input.module, function.name);
+            analyzer.engine = engine;
+            analyzer.out = NULL_OUT;
+            analyzer.err = NULL_OUT;
+            analyzers.add(analyzer);
+        }
+        return analyzers;
+    }
+
+    static List<DataFlowControl> controlAnalyzers(Input input) {
+        List<DataFlowControl> analyzers = new ArrayList<>();
+        for (LirModule.Function function : input.module.getFunctions()) {
+            DataFlowControl analyzer = new DataFlowControl(input.module, function.name);
+            analyzer.out = NULL_OUT;
+            analyzer.err = NULL_OUT;
+            analyzers.add(analyzer);
+        }
+        return analyzers;
+    }
+
+    static class Result {
+        final double opsPerSecond;
+        final double error;
+        final double bytesPerOp;
+
+        Result(double opsPerSecond, double error, double bytesPerOp) {
+            this.opsPerSecond = opsPerSecond;
+            this.error = error;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    static <T> Result measure(Phase<T> phase, Input input, int warmups, int iterations, long iterationNanos) throws IOException {
+        for (int i = 0; i < warmups; i++) {
+            iteration(phase, input, iterationNanos);
+        }
+        double[] rates = new double[iterations];
+        long ops = 0;
+        long bytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            long[] measured = iteration(phase, input, iterationNanos);
+            rates[i] = measured[0] * 1e9 / measured[1];
+            ops += measured[0];
+            bytes += measured[2];
+        }
+        double mean = Arrays.stream(rates).average().orElse(0);
+        double variance = 0;
+        for (double rate : rates) {
+            variance += (rate - mean) * (rate - mean);
+        }
+        double error = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+        return new Result(mean, error, (double) bytes / ops);
+    }
+
+    // {ops, timed nanoseconds, allocated bytes}. When setup costs far more than the op,
+    // the iteration also stops after a few times its length in wall time.
+    static <T> long[] iteration(Phase<T> phase, Input input, long iterationNanos) throws IOException {
+        long ops = 0;
+        long timed = 0;
+        long bytes = 0;
+        long deadline = System.nanoTime() + 4 * iterationNanos;
+        while (timed < iterationNanos && (ops == 0 || System.nanoTime() < deadline)) {
+            T state = phase.setup(input);
+            long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            phase.run(state);
+            timed += System.nanoTime() - start;
+            bytes += THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            ops++;
+        }
+        return new long[]{ops, timed, bytes};
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> paths = new ArrayList<>();
+        List<Integer> synthetic = new ArrayList<>();
+        List<String> only = null;
+        LirGenerator generator = new LirGenerator();
+        int warmups = 3;
+        int iterations = 5;
+        long iterationMillis = 500;
+        for (String arg : args) {
+            if (arg.startsWith("--synthetic=")) {
+                for (String size : arg.substring("--synthetic=".length()).split(",")) {
+                    synthetic.add(Integer.parseInt(size));
+                }
+            } else if (arg.startsWith("--warmup=")) {
+                warmups = Integer.parseInt(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--iterations=")) {
+                iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+            } else if (arg.startsWith("--time=")) {
+                iterationMillis = Long.parseLong(arg.substring("--time=".length()));
+            } else if (arg.startsWith("--only=")) {
+                only = Arrays.asList(arg.substring("--only=".length()).split(","));
+            } else if (arg.startsWith("--engine=")) {
+                engine = DataFlowRdef.Engine.parse(arg.substring("--engine=".length()));
+            } else if (!generator.option(arg)) {
+                paths.add(arg);
+            }
+        }
+        if (paths.isEmpty() && synthetic.isEmpty()) {
+            paths.add("NPSGF");
+        }
+
+        List<Input> inputs = new ArrayList<>();
+        for (String path : paths) {
+            File file = new File(path);
+            File[] files = file.isDirectory() ? file.listFiles((dir, name) -> name.endsWith(".lir")) : new File[]{file};
+            Arrays.sort(files);
+            for (File lir : files) {
+                inputs.add(new Input(lir.getPath(), lir.getPath()));
+            }
+        }
+        for (int blocks : synthetic) {
+            Path lir = Files.createTempFile("synthetic-" + blocks + "-", ".lir");
+            lir.toFile().deleteOnExit();
+            generator.blocks = blocks;
+            Files.write(lir, generator.generate().getBytes(StandardCharsets.UTF_8));
+            inputs.add(new Input("synthetic/" + blocks, lir.toString()));
+        }
+
+        System.out.printf("%-16s %-24s %14s %12s %14s %12s%n", "Benchmark", "Input", "ops/s", "error", "B/op", "MB/s");
+        for (Phase<?> phase : phases()) {
+            if (only != null && !only.contains(phase.name)) {
+                continue;
+            }
+            for (Input input : inputs) {
+                Result result = measure(phase, input, warmups, iterations, iterationMillis * 1_000_000L);
+                System.out.printf("%-16s %-24s %14.1f %12.1f %14.0f %12.1f%n", phase.name, input.name,
+                        result.opsPerSecond, result.error, result.bytesPerOp,
+                        result.bytesPerOp * result.opsPerSecond / (1 << 20));
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// Sends one request to a running AnalysisServer and prints the reply, so a query
+// costs a small JVM start instead of javac plus a cold analysis.
+// Usage: java AnalysisClient <rdef|control> <lir_file> <json_file> <function_name> [flag]...
+public class AnalysisClient {
+
+    // Flags whose value is a path
+    static final String[] PATH_FLAGS = {"--output=", "--metrics=", "--cache="};
+
+    public static void main(String[] args) {
+        String socketPath = System.getenv("DATAFLOW_SOCKET");
+        if (args.length < 4 || socketPath == null) {
+            System.err.println("Usage: DATAFLOW_SOCKET=<path> java AnalysisClient <rdef|control> <lir_file> <json_file> <function_name> [flag]...");
+            System.exit(2);
+        }
+        // The server has its own working directory, so every path is sent absolute
+        String lirFile = absolute(args[1]);
+        String jsonFile = absolute(args[2]);
+        String[] flags = Arrays.copyOfRange(args, 4, args.length);
+        for (int i = 0; i < flags.length; i++) {
+            for (String pathFlag : PATH_FLAGS) {
+                if (flags[i].startsWith(pathFlag)) {
+                    flags[i] = pathFlag + absolute(flags[i].substring(pathFlag.length()));
+                }
+            }
+        }
+        String request = AnalysisServer.request(args[0], lirFile, jsonFile, args[3], flags);
+
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+            BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            out.println(request);
+            out.flush();
+            String line;
+            while ((line = in.readLine()) != null && !line.equals(AnalysisServer.END)) {
+                if (line.startsWith(AnalysisServer.ERROR)) {
+                    System.err.println(line.substring(AnalysisServer.ERROR.length()));
+                } else {
+                    System.out.println(line);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot reach analysis server at " + socketPath + ": " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    // Empty stays empty, as for an unused json file
+    private static String absolute(String path) {
+        return path.isEmpty() ? path : Paths.get(path).toAbsolutePath().toString();
+    }
+}
@@ -0,0 +1,119 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Counters and phase timings of one function's analysis, collected only when
+// --metrics=<file> is given. Analyzers hold a null reference otherwise, so the
+// fixpoint loop pays a single null check per join.
+//
+// The file is one JSON object per run:
+//   {"analysis": "rdef", "file": ..., "parseNanos": n, "functions": [
+//     {"function": ..., "phases": {name: nanos, ...}, "counters": {name: n, ...},
+//      "worklistPops": {block: n, ...}}, ...]}
+class AnalysisMetrics {
+
+    final String function;
+    final Map<String, Long> phases = new LinkedHashMap<>();
+    final Map<String, Long> counters = new LinkedHashMap<>();
+    final Map<String, Integer> worklistPops = new LinkedHashMap<>();
+    // Updated from the fixpoint loop, copied into counters when it finishes
+    long joins = 0;
+    long changedJoins = 0;
+
+    AnalysisMetrics(String function) {
+        this.function = function;
+    }
+
+    void phase(String name, long nanos) {
+        phases.merge(name, nanos, Long::sum);
+    }
+
+    void join(boolean changed) {
+        joins++;
+        if (changed) {
+            changedJoins++;
+        }
+    }
+
+    void recordWorklist(WorklistScheduler worklist) {
+        for (String block : worklist.getOrder()) {
+            worklistPops.put(block, worklist.getVisits(block));
+        }
+    }
+
+    // Largest total of definition points held by one of the states
+    static long peakDefinitionPoints(Iterable<PersistentState> states) {
+        long peak = 0;
+        for (PersistentState state : states) {
+            long points = 0;
+            for (int var = 0; var < state.size(); var++) {
+                VariableState varState = state.get(var);
+                if (varState != null) {
+                    points += varState.getDefinitionPoints().size();
+                }
+            }
+            peak = Math.max(peak, points);
+        }
+        return peak;
+    }
+
+    static void write(String path, String analysis, String file, long parseNanos, List<AnalysisMetrics> functions)
+            throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"analysis\": ").append(quote(analysis))
+                .append(", \"file\": ").append(quote(file))
+                .append(", \"parseNanos\": ").append(parseNanos)
+                .append(", \"functions\": [");
+        for (int i = 0; i < functions.size(); i++) {
+            if (i > 0) {
+                json.append(", ");
+            }
+            functions.get(i).appendTo(json);
+        }
+        json.append("]}\n");
+        try (Writer out = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
+            out.write(json.toString());
+        }
+    }
+
+    private void appendTo(StringBuilder json) {
+        json.append("{\"function\": ").append(quote(function));
+        appendMap(json, "phases", phases);
+        appendMap(json, "counters", counters);
+        appendMap(json, "worklistPops", worklistPops);
+        json.append('}');
+    }
+
+    private static void appendMap(StringBuilder json, String name, Map<String, ? extends Number> values) {
+        json.append(", ").append(quote(name)).append(": {");
+        boolean first = true;
+        for (Map.Entry<String, ? extends Number> entry : values.entrySet()) {
+            if (!first) {
+                json.append(", ");
+            }
+            first = false;
+            json.append(quote(entry.getKey())).append(": ").append(entry.getValue());
+        }
+        json.append('}');
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,129 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// Keeps the analyses loaded in one JVM and answers requests, one per line:
+//
+//   <rdef|control> TAB <lir_file> TAB <json_file> TAB <function_name> [TAB <flag>]...
+//
+// Fields are the command-line arguments of the analysis; the json file may be empty.
+//
+// The reply is the analysis output, then every stderr line prefixed with "!",
+// then a line holding a single ".". Requests come from stdin, or from clients of
+// a Unix domain socket when started with --socket=<path>.
+public class AnalysisServer {
+
+    static final String END = ".";
+    static final String ERROR = "!";
+
+    public static void main(String[] args) throws IOException {
+        String socketPath = null;
+        for (String arg : args) {
+            if (arg.startsWith("--socket=")) {
+                socketPath = arg.substring("--socket=".length());
+            }
+        }
+        if (socketPath == null) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            serve(in, out);
+            return;
+        }
+
+        Path path = Paths.get(socketPath);
+        Files.deleteIfExists(path);
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(path));
+            path.toFile().deleteOnExit();
+            while (true) {
+                SocketChannel client = server.accept();
+                // Analyzers share nothing mutable, so every client gets its own thread
+                Thread thread = new Thread(() -> {
+                    try (SocketChannel channel = client) {
+                        BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+                        PrintWriter out = new PrintWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+                        serve(in, out);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                });
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    static void serve(BufferedReader in, PrintWriter out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.trim().length() == 0) {
+                continue;
+            }
+            handle(line, out);
+            out.flush();
+        }
+    }
+
+    static void handle(String request, Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        String[] fields = request.split("\t");
+        ByteArrayOutputStream results = new ByteArrayOutputStream();
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        PrintStream resultStream = new PrintStream(results, true, StandardCharsets.UTF_8);
+        PrintStream errorStream = new PrintStream(errors, true, StandardCharsets.UTF_8);
+        if (fields.length < 4) {
+            errorStream.println("usage: <rdef|control>\t<lir_file>\t<json_file>\t<function_name>[\t<flag>]...");
+        } else {
+            String[] args = Arrays.copyOfRange(fields, 1, fields.length);
+            try {
+                switch (fields[0]) {
+                    case "rdef":
+                        DataFlowRdef.run(args, resultStream, errorStream);
+                        break;
+                    case "control":
+                        DataFlowControl.run(args, resultStream, errorStream);
+                        break;
+                    default:
+                        errorStream.println("unknown analysis: " + fields[0]);
+                }
+            } catch (RuntimeException | Error e) {
+                // A stack overflow on a deep CFG, or running out of memory, ends this
+                // request only; the client still gets its reply and the server goes on
+                errorStream.println(e);
+            }
+        }
+        try {
+            out.print(results.toString(StandardCharsets.UTF_8));
+            for (String error : errors.toString(StandardCharsets.UTF_8).split("\n")) {
+                if (error.length() != 0) {
+                    out.println(ERROR + error);
+                }
+            }
+        } finally {
+            out.println(END);
+            out.flush();
+        }
+    }
+
+    static String request(String kind, String lirFile, String jsonFile, String functionName, String... flags) {
+        StringBuilder request = new StringBuilder(kind).append('\t').append(lirFile).append('\t').append(jsonFile)
+                .append('\t').append(functionName);
+        Arrays.stream(flags).forEach(flag -> request.append('\t').append(flag));
+        return request.toString();
+    }
+}
@@ -0,0 +1,54 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// GEN/KILL transfer of a whole basic block for reaching definitions:
+// σ'[x] = GEN[x] if the block kills x, otherwise σ[x] ∪ GEN[x].
+// Only variables the block defines are stored, every other variable passes through.
+class BlockSummary {
+
+    private final List<Integer> vars = new ArrayList<>();
+    private final List<Boolean> kills = new ArrayList<>();
+    private final List<DefinitionSet> gens = new ArrayList<>();
+
+    public void addVariable(int var, boolean kill, DefinitionSet gen) {
+        vars.add(var);
+        kills.add(kill);
+        gens.add(gen);
+    }
+
+    public int size() {
+        return vars.size();
+    }
+
+    // Variables missing from the state stay missing, like the per-instruction transfer.
+    // Variables whose definition points come out unchanged keep their old VariableState.
+    public PersistentState apply(PersistentState preState) {
+        PersistentState.Editor editor = null;
+        for (int i = 0; i < vars.size(); i++) {
+            int var = vars.get(i);
+            VariableState varState = preState.get(var);
+            if (varState == null) {
+                continue;
+            }
+            DefinitionSet gen = gens.get(i);
+            VariableState newState;
+            if (kills.get(i)) {
+                if (varState.getDefinitionPoints().equals(gen)) {
+                    continue;
+                }
+                newState = varState.copyNew(gen);
+            } else {
+                if (varState.getDefinitionPoints().containsAll(gen)) {
+                    continue;
+                }
+                newState = varState.clone();
+                newState.addAllDefinitionPoint(gen);
+            }
+            if (editor == null) {
+                editor = preState.edit();
+            }
+            editor.set(var, newState);
+        }
+        return editor == null ? preState : editor.build();
+    }
+}
@@ -1,7 +1,7 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,21 +17,57 @@ public class DataFlowControl {
         }
     }
 
-    static TreeSet<String> basicBlocks = new TreeSet<>();
-    static TreeMap<String, List<String>> blockSuccessors = new TreeMap<>();
-    static TreeMap<String, TreeSet<String>> predecessors = new TreeMap<>();
-    static TreeMap<String, TreeSet<String>> dominators = new TreeMap<>();
-    static TreeMap<String, TreeSet<String>> postDominators = new TreeMap<>();
-    static TreeMap<String, List<String>> reverseSuccessors = new TreeMap<>();
-    static TreeMap<String, TreeSet<String>> dominanceFrontiers = new TreeMap<>();
+    TreeSet<String> basicBlocks = new TreeSet<>();
+    TreeMap<String, List<String>> blockSuccessors = new TreeMap<>();
+    TreeMap<String, TreeSet<String>> predecessors = new TreeMap<>();
+    DominatorTree dominators;
+    TreeMap<String, TreeSet<String>> postDominators = new TreeMap<>();
+    TreeMap<String, List<String>> reverseSuccessors = new TreeMap<>();
+    TreeMap<String, TreeSet<String>> dominanceFrontiers = new TreeMap<>();
+    boolean printRounds = false;
+    // Set by --metrics, null otherwise
+    AnalysisMetrics metrics = null;
+    PrintStream out = System.out;
+    PrintStream err = System.err;
+    final LirModule module;
+    final String functionName;
+
+    // One analyzer per function, the module is shared read-only
+    public DataFlowControl(LirModule module, String functionName) {
+        this.module = module;
+        this.functionName = functionName;
+    }
 
+    public void controlDominanceAnalysis() {
+        long start = System.nanoTime();
+        loadFunction();
+        start = lap("load", start);
+        computePredecessors();
+        start = lap("predecessors", start);
+        //Compute dominators
+        computeDominators();
+        start = lap("dominators", start);
+        computeDominanceFrontiers();
+        start = lap("frontier", start);
+        printDominanceResults();
+        lap("output", start);
+        if (metrics != null) {
+            metrics.counters.put("dominatorRounds", (long) dominators.getRounds());
+        }
+    }
 
-    public static void controlDominanceAnalysis(String filePath, String functionName) {
-        Queue<String> worklist = new PriorityQueue<>();
+    // Adds the time since start to the phase when collecting metrics, returns the new start
+    private long lap(String phase, long start) {
+        if (metrics == null) {
+            return start;
+        }
+        long now = System.nanoTime();
+        metrics.phase(phase, now - start);
+        return now;
+    }
 
-        parseLirFile(filePath, functionName);
+    void computePredecessors() {
         predecessors.put("entry", new TreeSet<>());
-        String postEntry = "entry";
         for (String block : basicBlocks) {
             if (blockSuccessors.get(block) != null) {
                 for (String target : blockSuccessors.get(block)) {
@@ -39,8 +75,9 @@ public class DataFlowControl {
                 }
             }
         }
-        //Compute dominators
-        computeDominators();
+    }
+
+    void computeDominanceFrontiers() {
 //        for (String block : basicBlocks) {
 //            System.out.println(block + ", Dominators: " + dominators.get(block));
 //        }
@@ -48,157 +85,72 @@ public class DataFlowControl {
 //            System.out.println(block + ", Dominators: " + dominators.get(block));
 //        }
         for (String block : basicBlocks) {
-            if(!block.equals("entry") && dominators.get(block).size() == 1 ){
-                postEntry = block;
-            }
             dominanceFrontiers.put(block, new TreeSet<>());
         }
 
+        // Cytron et al.: walk up from each predecessor of a block to the block's immediate
+        // dominator, the block is in the frontier of every block passed on the way
         for (String curBlock : basicBlocks) {
-            TreeSet<String> bbDoms = dominators.get(curBlock); // Get the dominators of the block
-            TreeSet<String> strictBbDoms = new TreeSet<>(bbDoms);
-            strictBbDoms.remove(curBlock); // Remove the block itself to make it 'strict'
-
-            // Iterate over each predecessor of the current block
-            for (String pred : predecessors.getOrDefault(curBlock, new TreeSet<>())) {
-                // Get the dominators of the predecessor
-                TreeSet<String> predDoms = dominators.get(pred);
-
-                TreeSet<String> relevantPredDoms = new TreeSet<>(predDoms);
-                relevantPredDoms.removeAll(strictBbDoms);
-
-                for (String predDom : relevantPredDoms) {
-                    dominanceFrontiers.computeIfAbsent(predDom, k -> new TreeSet<>()).add(curBlock);
+            TreeSet<String> preds = predecessors.getOrDefault(curBlock, new TreeSet<>());
+            if (!dominators.isReachable(curBlock)) {
+                // Everything dominates an unreachable block, so only the block itself is left
+                if (!preds.isEmpty()) {
+                    dominanceFrontiers.get(curBlock).add(curBlock);
                 }
+                continue;
             }
-        }
-
-        printDominanceResults();
-    }
-
-    public static void computeDominators() {
-        for (String block : basicBlocks) {
-            dominators.put(block, basicBlocks);
-        }
-        // The entry block is only dominated by itself
-        TreeSet<String> entryDominators = new TreeSet<>();
-        entryDominators.add("entry");
-        dominators.put("entry", entryDominators);
-
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-            for (String block : basicBlocks) {
-                if (block.equals("entry")) continue; // Skip the entry block
-
-                TreeSet<String> newDominators = new TreeSet<>(basicBlocks);
-                for (String pred : predecessors.get(block)) {
-                    TreeSet set = dominators.get(pred);
-                    newDominators.retainAll(dominators.get(pred));
+            String idom = dominators.getImmediateDominator(curBlock);
+            for (String pred : preds) {
+                if (!dominators.isReachable(pred)) {
+                    // An unreachable predecessor is dominated by every block
+                    for (String block : basicBlocks) {
+                        if (block.equals(curBlock) || !dominators.dominates(block, curBlock)) {
+                            dominanceFrontiers.get(block).add(curBlock);
+                        }
+                    }
+                    continue;
                 }
-                // a block dominates itself
-                newDominators.add(block);
-
-                if (!dominators.get(block).equals(newDominators)) {
-                    dominators.put(block, newDominators);
-                    changed = true;
+                String runner = pred;
+                while (runner != null && !runner.equals(idom)) {
+                    dominanceFrontiers.get(runner).add(curBlock);
+                    runner = dominators.getImmediateDominator(runner);
                 }
             }
         }
     }
 
-    private static void parseLirFile(String filePath, String functionName) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String currentBlock = null;
-            boolean isFunction = false;
-            boolean isStruct = false;
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-
-                if (line.length() == 0) continue;
-                if (line.startsWith("fn " + functionName)) {
-                    isFunction = true;
-                    if (line.contains(":") && line.contains("(")) {
-                        String paramSubstring = line.substring(line.indexOf('(') + 1, line.indexOf(')'));
-                        StringBuilder transformedPart = new StringBuilder();
-                        int parenthesisLevel = 0;
-                        for (char c : paramSubstring.toCharArray()) {
-                            if (c == '(') {
-                                parenthesisLevel++;
-                            } else if (c == ')') {
-                                parenthesisLevel--;
-                            } else if (c == ',' && parenthesisLevel > 0) {
-                                c = '|';
-                            }
-                            transformedPart.append(c);
-                        }
-                        String[] variables = paramSubstring.split(",\\s*");
-                        for (String varDeclaration : variables) {
-                            String[] parts = varDeclaration.split(":");
-                            String varName = parts[0].trim();
-                            // Should get all types
-                            String type = parts[1].trim();
-                            VariableState newState = new VariableState();
-                            newState.setType(type);
-                            if (type.startsWith("&")) {
-                                newState.setPointsTo(type.substring(1));
-                            }
-                        }
-                    }
-                } else if (isFunction && line.startsWith("}")) {
-                    isFunction = false;
-                    currentBlock = null;
-                } else if (line.startsWith("struct ")) {
-                    isStruct = true;
-                } else if (isStruct && line.startsWith("}")) {
-                    isStruct = false;
-                } else if (!isFunction && !isStruct && line.matches("^\\w+:int$")) {
-
-                } else if (isFunction) {
-                    if (line.matches("^\\w+:")) {
-                        currentBlock = line.replace(":", "");
-                        basicBlocks.add(currentBlock);
-                    } else if (line.startsWith("let ")) {
-                        String variablesPart = line.substring("let ".length());
-                        StringBuilder transformedPart = new StringBuilder();
-                        int parenthesisLevel = 0;
-                        for (char c : variablesPart.toCharArray()) {
-                            if (c == '(') {
-                                parenthesisLevel++;
-                            } else if (c == ')') {
-                                parenthesisLevel--;
-                            } else if (c == ',' && parenthesisLevel > 0) {
-                                c = '|';
-                            }
-                            transformedPart.append(c);
-                        }
-                        String[] variables = transformedPart.toString().split(",\\s*");
-                    } else {
-                        String[] parts = line.split(" ");
-                        if (currentBlock != null) {
-                            if (line.startsWith("$jump")) {
-                                String targetBlock = extractTargetBlock(line);
-                                blockSuccessors.computeIfAbsent(currentBlock, k -> new ArrayList<>()).add(targetBlock);
-                                reverseSuccessors.computeIfAbsent(targetBlock, k -> new ArrayList<>()).add(currentBlock);
-                            } else if (line.startsWith("$branch")) {
-                                blockSuccessors.computeIfAbsent(currentBlock, k -> new ArrayList<>()).add(parts[2]); // trueBlock
-                                blockSuccessors.computeIfAbsent(currentBlock, k -> new ArrayList<>()).add(parts[3]); // falseBlock
-                                reverseSuccessors.computeIfAbsent(parts[2], k -> new ArrayList<>()).add(currentBlock); // trueBlock
-                                reverseSuccessors.computeIfAbsent(parts[3], k -> new ArrayList<>()).add(currentBlock); // falseBlock
-                            } else if (line.contains("then")) {
-                                String targetBlock = line.substring(line.lastIndexOf("then") + 5).trim();
-                                blockSuccessors.computeIfAbsent(currentBlock, k -> new ArrayList<>()).add(targetBlock);
-                                reverseSuccessors.computeIfAbsent(targetBlock, k -> new ArrayList<>()).add(currentBlock);
-                            } else {
-                            }
-                        }
-                    }
+    public void computeDominators() {
+        dominators = new DominatorTree("entry", basicBlocks, blockSuccessors);
+        if (printRounds) {
+            err.println("dominator rounds: " + dominators.getRounds());
+        }
+    }
+
+    void loadFunction() {
+        LirModule.Function function = module.getFunction(functionName);
+        if (function == null) {
+            return;
+        }
+        for (LirModule.Block block : function.blocks) {
+            String currentBlock = block.label;
+            basicBlocks.add(currentBlock);
+            for (String line : block.instructions) {
+                String[] parts = line.split(" ");
+                if (line.startsWith("$jump")) {
+                    String targetBlock = extractTargetBlock(line);
+                    blockSuccessors.computeIfAbsent(currentBlock, k -> new ArrayList<>()).add(targetBlock);
+                    reverseSuccessors.computeIfAbsent(targetBlock, k -> new ArrayList<>()).add(currentBlock);
+                } else if (line.startsWith("$branch")) {
+                    blockSuccessors.computeIfAbsent(currentBlock, k -> new ArrayList<>()).add(parts[2]); // trueBlock
+                    blockSuccessors.computeIfAbsent(currentBlock, k -> new ArrayList<>()).add(parts[3]); // falseBlock
+                    reverseSuccessors.computeIfAbsent(parts[2], k -> new ArrayList<>()).add(currentBlock); // trueBlock
+                    reverseSuccessors.computeIfAbsent(parts[3], k -> new ArrayList<>()).add(currentBlock); // falseBlock
+                } else if (line.contains("then")) {
+                    String targetBlock = line.substring(line.lastIndexOf("then") + 5).trim();
+                    blockSuccessors.computeIfAbsent(currentBlock, k -> new ArrayList<>()).add(targetBlock);
+                    reverseSuccessors.computeIfAbsent(targetBlock, k -> new ArrayList<>()).add(currentBlock);
                 }
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 
@@ -211,27 +163,87 @@ public class DataFlowControl {
         return "";
     }
 
-    private static void printDominanceResults() {
+    void printDominanceResults() {
+        ResultWriter writer = new ResultWriter(out);
         // Sort the basic block names alphabetically
         for (Map.Entry<String, TreeSet<String>> entry : dominanceFrontiers.entrySet()) {
-            // Convert the Set to a String with square brackets
-            String formattedValue = entry.getValue().toString()
-                    .replace("[", "{")
-                    .replace("]", "}");
-            System.out.println(entry.getKey() + " -> " + formattedValue);
+            writer.append(entry.getKey()).append(" -> {");
+            boolean first = true;
+            for (String block : entry.getValue()) {
+                if (!first) {
+                    writer.append(", ");
+                }
+                writer.append(block);
+                first = false;
+            }
+            writer.append('}').newLine();
         }
+        writer.flush();
+        out.flush();
     }
 
     public static void main(String[] args) {
         if (args.length < 2) {
-            System.out.println("Usage: java DataFlowConstants <lir_file_path> <json_file_path> <function_name>");
+            System.out.println("Usage: java DataFlowConstants <lir_file_path> <json_file_path> <function_name>|--all|<fn1,fn2,...>");
             System.exit(1);
         }
-        String lirFilePath = args[0];
+        run(args, System.out, System.err);
+    }
+
+    // Same arguments as main, with the results written to the given streams
+    static void run(String[] args, PrintStream out, PrintStream err) {
         String functionName = "test";
         if (args.length > 2 && args[2].length() != 0) {
             functionName = args[2];
         }
-        controlDominanceAnalysis(lirFilePath, functionName);
+        boolean printRounds = false;
+        String metricsFile = null;
+        String outputFile = null;
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].equals("--visits")) {
+                printRounds = true;
+            } else if (args[i].startsWith("--metrics=")) {
+                metricsFile = args[i].substring("--metrics=".length());
+            } else if (args[i].startsWith("--output=")) {
+                outputFile = args[i].substring("--output=".length());
+            }
+        }
+        int jobs = ModuleDriver.parseJobs(args, err);
+        if (jobs == 0) {
+            return;
+        }
+        LirModule module;
+        long parseStart = System.nanoTime();
+        try {
+            module = LirModule.load(args, err);
+            if (outputFile != null) {
+                out = ResultWriter.open(outputFile);
+            }
+        } catch (IOException e) {
+            e.printStackTrace(err);
+            return;
+        }
+        long parseNanos = System.nanoTime() - parseStart;
+        boolean rounds = printRounds;
+        boolean batch = functionName.equals("--all") || functionName.contains(",");
+        List<String> names = module.selectFunctions(functionName);
+        Map<String, AnalysisMetrics> metrics = metricsFile == null ? null : new ConcurrentHashMap<>();
+        ModuleDriver.analyze(names, batch, jobs, out, err, (name, functionOut, functionErr) -> {
+            DataFlowControl analyzer = new DataFlowControl(module, name);
+            if (metrics != null) {
+                analyzer.metrics = new AnalysisMetrics(name);
+                metrics.put(name, analyzer.metrics);
+            }
+            analyzer.printRounds = rounds;
+            analyzer.out = functionOut;
+            analyzer.err = functionErr;
+            analyzer.controlDominanceAnalysis();
+        });
+        if (outputFile != null) {
+            out.close();
+        }
+        if (metrics != null) {
+            ModuleDriver.writeMetrics(metricsFile, "control", args[0], parseNanos, names, metrics, err);
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,135 +1,267 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class DataFlowRdef {
 
 //    Make addr_taken a map like Map<Type, Set<VarId>>.
-    static Map<String, Set<String>> addressTakenVariables = new TreeMap<>();
+    Map<LirType, Set<Integer>> addressTakenVariables = new HashMap<>();
+    // The same relation as variable-id bitsets indexed by type id, and per type the union
+    // of addr_taken over its reachable types. Built once addr_taken is complete.
+    BitSet[] addressTakenByType;
+    BitSet[] reachableAddressTaken;
+    private static final BitSet NO_VARIABLES = new BitSet();
 
-    static Set<String> allAddressTakenVars = new HashSet<>();
+    Set<Integer> allAddressTakenVars = new HashSet<>();
 //    all pointer-typed globals, parameters, and locals of the function being analyzed,
-    static Set<String> PTRS = new HashSet<>();
-    static Map<String, String> globalVars = new HashMap<>();
-    static Set<String> localParams = new HashSet<>();
+    Set<LirType> PTRS = new HashSet<>();
+    Map<String, LirType> globalVars = new HashMap<>();
+    List<Integer> globalIds = new ArrayList<>();
+    Set<Integer> localParams = new HashSet<>();
+    Set<Integer> localVars = new HashSet<>();
 
-    static Map<String, List<String>> blockSuccessors = new HashMap<>();
+    Map<String, List<String>> blockSuccessors = new HashMap<>();
 
-    static Map<String, Set<String>> blockVars = new HashMap<>();
-    static Map<String, VariableState> variableStates = new TreeMap<>();
+    //Every variable gets a dense id, abstract states are arrays indexed by it
+    SymbolTable symbols = new SymbolTable();
+    final LirModule module;
+    final String functionName;
+    // The module's types, or those of the previous run when re-analyzing incrementally
+    // so that reused states hold the same type objects
+    LirType.Table typeTable;
+    Map<String, Set<Integer>> blockVars = new HashMap<>();
+    List<VariableState> variableStates = new ArrayList<>();
 
-    static Map<String, VariableState> fakeHeapStates = new TreeMap<>();
+    Map<String, VariableState> fakeHeapStates = new TreeMap<>();
 
-    static Map<String, Set<String>> fnParamsGlobalsTypes = new TreeMap<>();
+    Map<String, Set<LirType>> fnParamsGlobalsTypes = new TreeMap<>();
     //Map save varName to type
-    static Map<String, String> fnVarsMap = new TreeMap<>();
-    static Set<String> processedBlocks = new HashSet<>();
+    Map<String, LirType> fnVarsMap = new TreeMap<>();
+    Set<String> processedBlocks = new HashSet<>();
 
-    static Queue<String> worklist = new PriorityQueue<>();
-    static Map<String, Set<String>> reachableTypesMap = new TreeMap<>();
-    static Map<String, List<ProgramPoint.Instruction>> basicBlocksInstructions = new HashMap<>();
+    WorklistScheduler worklist;
+    // --order=rpo or wto. WTO is the default: on nested loops it stabilizes each loop
+    // before moving on, and takes far fewer visits than reverse postorder
+    WorklistScheduler.Order iterationOrder = WorklistScheduler.Order.WEAK_TOPOLOGICAL;
+    Engine engine = Engine.DENSE;
+    // Sparse engine only: locals no pointer reaches, and their definitions in SSA form
+    BitSet sparseVariables = null;
+    SsaDefinitions ssa = null;
+    boolean printVisits = false;
+    // Set by --metrics, null otherwise
+    AnalysisMetrics metrics = null;
+    PrintStream out = System.out;
+    PrintStream err = System.err;
+    Map<String, BlockSummary> blockSummaries = new HashMap<>();
+    Map<LirType, Set<LirType>> reachableTypesMap = new HashMap<>();
+    Map<String, List<ProgramPoint.Instruction>> basicBlocksInstructions = new HashMap<>();
+    // Program points by number, the bit index used in DefinitionSet. Numbers follow
+    // the output order, so a set read in bit order is already sorted.
+    List<ProgramPoint.Instruction> programPoints = new ArrayList<>();
 
-    static Map<String, TreeSet<ProgramPoint.Instruction>> reachingDefinitions = new TreeMap<>(new Comparator<String>() {
-        @Override
-        public int compare(String o1, String o2) {
-            // Split keys into blockName and Index parts
-            String[] parts1 = o1.split("\\.");
-            String[] parts2 = o2.split("\\.");
+    // soln[pp] by program point id. Points with the same key share one set, as they
+    // shared one name.
+    DefinitionSet[] reachingDefinitions = new DefinitionSet[0];
 
-            String blockName1 = parts1[0];
-            String blockName2 = parts2[0];
+    // DENSE propagates σ of every variable through every block. SPARSE propagates only
+    // the address-taken and fake heap variables, and takes the other locals of the
+    // function from SSA def-use chains, see SsaDefinitions. Both print the same soln.
+    enum Engine {
+        DENSE, SPARSE;
 
-            int blockNameCompare = blockName1.compareTo(blockName2);
-            if (blockNameCompare != 0) {
-                return blockNameCompare;
+        static Engine parse(String name) {
+            switch (name) {
+                case "dense":
+                    return DENSE;
+                case "sparse":
+                    return SPARSE;
+                default:
+                    throw new IllegalArgumentException("Unknown engine: " + name);
             }
+        }
+    }
 
-            boolean isTerm1 = parts1[1].equalsIgnoreCase("term");
-            boolean isTerm2 = parts2[1].equalsIgnoreCase("term");
+    // Last analysis of each file#function run with --incremental in this JVM, which
+    // only pays off in a long-running process such as AnalysisServer. Least recently
+    // used entries are dropped, a resident server sees any number of files.
+    private static final int PREVIOUS_RESULTS = 32;
+    static final Map<String, Snapshot> previousResults =
+            new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+                    return size() > PREVIOUS_RESULTS;
+                }
+            };
+
+    // What an incremental run needs from the previous one: the block texts to diff,
+    // the tables that decide whether unchanged blocks still transfer the same way,
+    // and the fixpoint. The module and the rest of the analyzer are not kept.
+    static class Snapshot {
+        final Map<String, List<String>> blocks = new HashMap<>();
+        final Map<String, List<String>> blockSuccessors;
+        final SymbolTable symbols;
+        final List<LirType> types = new ArrayList<>();
+        final Engine engine;
+        final List<Integer> globalIds;
+        final Set<Integer> localParams;
+        final Set<Integer> allAddressTakenVars;
+        final Map<LirType, Set<Integer>> addressTakenVariables;
+        final Map<LirType, Set<LirType>> reachableTypesMap;
+        final Map<String, Set<LirType>> fnParamsGlobalsTypes;
+        // Program point names by id
+        final List<String> programPoints = new ArrayList<>();
+        final TreeMap<String, PersistentState> preStates;
+        final Set<String> processedBlocks;
+        final LirType.Table typeTable;
 
-            if (isTerm1 && isTerm2) {
-                return 0;
-            } else if (isTerm1) {
-                return 1;
-            } else if (isTerm2) {
-                return -1;
+        Snapshot(DataFlowRdef analyzer) {
+            LirModule.Function function = analyzer.module.getFunction(analyzer.functionName);
+            if (function != null) {
+                for (LirModule.Block block : function.blocks) {
+                    blocks.put(block.label, block.instructions);
+                }
             }
+            blockSuccessors = analyzer.blockSuccessors;
+            symbols = analyzer.symbols;
+            for (VariableState state : analyzer.variableStates) {
+                types.add(state.getType());
+            }
+            engine = analyzer.engine;
+            globalIds = analyzer.globalIds;
+            localParams = analyzer.localParams;
+            allAddressTakenVars = analyzer.allAddressTakenVars;
+            addressTakenVariables = analyzer.addressTakenVariables;
+            reachableTypesMap = analyzer.reachableTypesMap;
+            fnParamsGlobalsTypes = analyzer.fnParamsGlobalsTypes;
+            for (ProgramPoint.Instruction instruction : analyzer.programPoints) {
+                programPoints.add(instruction.getName());
+            }
+            preStates = analyzer.preStates;
+            processedBlocks = analyzer.processedBlocks;
+            typeTable = analyzer.typeTable;
+        }
+    }
 
-            int index1 = Integer.parseInt(parts1[1]);
-            int index2 = Integer.parseInt(parts2[1]);
+    // Fixpoint pre-state of every block, kept so a later run can start from it
+    TreeMap<String, PersistentState> preStates;
+    // Earlier analysis of the same function, set to re-analyze incrementally after an edit
+    Snapshot previous = null;
 
-            return Integer.compare(index1, index2);
-        }
-    });
+    // One analyzer per function. The module is only read, so analyzers of the same
+    // module can run on different threads.
+    public DataFlowRdef(LirModule module, String functionName) {
+        this.module = module;
+        this.functionName = functionName;
+        this.typeTable = module.types;
+    }
 
-    public static void reachingDefinitionAnalysis(String filePath, String functionName) {
-        TreeMap<String, TreeMap<String, VariableState>> preStates = new TreeMap<>();
-        parseLirFile(filePath, functionName);
+    public void reachingDefinitionAnalysis() {
+        long start = System.nanoTime();
+        if (previous != null) {
+            typeTable = previous.typeTable;
+        }
+        loadFunction();
+        start = lap("load", start);
         calculateReachableTypes();
+        start = lap("reachableTypes", start);
+        solve();
+        start = lap("fixpoint", start);
+        printAnalysisResults();
+        lap("output", start);
+        if (printVisits) {
+            worklist.printVisits(err);
+        }
+    }
+
+    // Worklist fixpoint over the loaded function, then soln[pp] for every reached point
+    void solve() {
+        TreeMap<String, VariableState[]> initialBlockStates = new TreeMap<>();
+        internFakeHeapVariables();
 
         for (String blockName : blockVars.keySet()) {
-            TreeMap<String, VariableState> initialStates = new TreeMap<>();
-            Set<String> varsInBlock = blockVars.get(blockName);
-            for (String varName : varsInBlock) {
-                VariableState newState = variableStates.get(varName).clone();
-                initialStates.put(varName, newState);
+            VariableState[] initialStates = new VariableState[symbols.size()];
+            Set<Integer> varsInBlock = blockVars.get(blockName);
+            for (int var : varsInBlock) {
+                VariableState newState = variableStates.get(var).clone();
+                initialStates[var] = newState;
             }
 
             for(String globalVar : globalVars.keySet()){
                 VariableState newState = new VariableState();
                 newState.setType(globalVars.get(globalVar));
-                initialStates.put(globalVar, newState);
+                initialStates[symbols.lookup(globalVar)] = newState;
             }
 
-            for(String addName: allAddressTakenVars){
-                VariableState newState = variableStates.get(addName).clone();
-                initialStates.putIfAbsent(addName, newState);
+            for(int addVar: allAddressTakenVars){
+                if (initialStates[addVar] == null) {
+                    initialStates[addVar] = variableStates.get(addVar).clone();
+                }
             }
-            preStates.put(blockName, initialStates);
+            initialBlockStates.put(blockName, initialStates);
         }
 
-        TreeMap<String, VariableState> entryStates = preStates.get("entry");
-        for (String param : localParams) {
+        VariableState[] entryStates = initialBlockStates.get("entry");
+        for (int param : localParams) {
             VariableState newState = variableStates.get(param).clone();
-            entryStates.put(param, newState);
+            entryStates[param] = newState;
         }
 
         //Initial State ⊥ for all program points
-        initializeVarsDefinitions(preStates);
+        initializeVarsDefinitions(initialBlockStates);
+        Map<String, BitSet> present = computeVariablePresence(initialBlockStates);
+        if (engine == Engine.SPARSE) {
+            sparseVariables = new BitSet(symbols.size());
+            for (int var : localParams) {
+                sparseVariables.set(var);
+            }
+            for (int var : localVars) {
+                sparseVariables.set(var);
+            }
+            for (int var : allAddressTakenVars) {
+                sparseVariables.clear(var);
+            }
+            ssa = new SsaDefinitions("entry", basicBlocksInstructions, blockSuccessors, sparseVariables, present);
+        }
         //Fake Heap Variables
         //Add fake heap variables to addressTakenVariables based on the analysis of pointer types (PTRSτ)
+        computeBlockSummaries(present);
 
-        worklist.add("entry");
-        processedBlocks.add("entry");
+        preStates = new TreeMap<>();
+        for (Map.Entry<String, VariableState[]> entry : initialBlockStates.entrySet()) {
+            VariableState[] states = entry.getValue();
+            if (sparseVariables != null) {
+                for (int var = sparseVariables.nextSetBit(0); var >= 0; var = sparseVariables.nextSetBit(var + 1)) {
+                    states[var] = null;
+                }
+            }
+            preStates.put(entry.getKey(), PersistentState.of(states));
+        }
+
+        worklist = new WorklistScheduler("entry", preStates.keySet(), blockSuccessors, iterationOrder);
+        Set<String> affected = previous == null ? null : affectedBlocks(previous);
+        if (affected == null || !reusePreviousFixpoint(previous, affected)) {
+            worklist.add("entry");
+            processedBlocks.add("entry");
+        }
 
         while (!worklist.isEmpty()) {
             String block = worklist.poll();
-            if(block.equals("bb7")){
-                String a = "";
-            }
-            TreeMap<String, VariableState> currentState = preStates.get(block);
-            TreeMap<String, VariableState> initialStates = new TreeMap<>();
-            for (Map.Entry<String, VariableState> entry : currentState.entrySet()) {
-                String varName = entry.getKey();
-                VariableState newState = currentState.get(varName).clone();
-                initialStates.put(varName, newState);
-            }
-            initialStates = analyzeBlock(block, initialStates);
+            PersistentState postState = blockSummaries.get(block).apply(preStates.get(block));
 
             for (String successor : blockSuccessors.getOrDefault(block, new LinkedList<>())) {
-                TreeMap<String, VariableState> successorPreState = preStates.get(successor);
-                TreeMap<String, VariableState> joinedState = joinMaps(successorPreState, initialStates);
-                if (!joinedState.equals(successorPreState) || initialStates.isEmpty()) {
+                PersistentState successorPreState = preStates.get(successor);
+                PersistentState joinedState = successorPreState == null ? postState : successorPreState.join(postState);
+                if (metrics != null && successorPreState != null) {
+                    metrics.join(joinedState != successorPreState);
+                }
+                if (joinedState != successorPreState) {
                     preStates.put(successor, joinedState);
-                    if (!worklist.contains(successor)) {
-                        processedBlocks.add(successor);
-                        worklist.add(successor);
-//                        System.out.println("Add to Worklist: " + worklist.toString());
-                    }
+                    processedBlocks.add(successor);
+                    worklist.add(successor);
                 }
                 if (!processedBlocks.contains(successor)) {
                     processedBlocks.add(successor);
@@ -137,822 +269,858 @@ public class DataFlowRdef {
                 }
             }
         }
-        printAnalysisResults();
+
+        //soln[pp] is read off the fixpoint, one pass over each reached block
+        for (String block : processedBlocks) {
+            VariableState[] state = preStates.get(block).toArray();
+            if (ssa != null) {
+                // The block's own locals join the fixpoint state with σ on entry from SSA
+                BitSet locals = ssa.variables(block);
+                for (int var = locals.nextSetBit(0); var >= 0; var = locals.nextSetBit(var + 1)) {
+                    state[var] = variableStates.get(var).copyNew(ssa.atEntry(block, var).copy());
+                }
+            }
+            analyzeBlock(block, state, true);
+        }
+        if (metrics != null) {
+            if (ssa != null) {
+                metrics.counters.put("sparseVariables", (long) sparseVariables.cardinality());
+                metrics.counters.put("phis", (long) ssa.getPhiCount());
+                metrics.counters.put("ssaNames", (long) ssa.getNameCount());
+            }
+            metrics.recordWorklist(worklist);
+            metrics.counters.put("joins", metrics.joins);
+            metrics.counters.put("changedJoins", metrics.changedJoins);
+            // Pre-states only grow, so the largest one at the fixpoint is the peak of the run
+            metrics.counters.put("peakDefinitionPoints", AnalysisMetrics.peakDefinitionPoints(preStates.values()));
+        }
+    }
+
+    // Adds the time since start to the phase when collecting metrics, returns the new start
+    private long lap(String phase, long start) {
+        if (metrics == null) {
+            return start;
+        }
+        long now = System.nanoTime();
+        metrics.phase(phase, now - start);
+        return now;
+    }
+
+    // Blocks whose instructions differ from the previous run, and every block they
+    // reach now or reached before. null when more than the blocks changed: variables,
+    // types or address-taken sets decide the transfer of unchanged blocks too.
+    private Set<String> affectedBlocks(Snapshot previous) {
+        if (previous.preStates == null || !sameEnvironment(previous)) {
+            return null;
+        }
+        LirModule.Function after = module.getFunction(functionName);
+        if (previous.blocks.isEmpty() || after == null) {
+            return null;
+        }
+        Map<String, List<String>> oldBlocks = previous.blocks;
+        Set<String> newBlocks = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        for (LirModule.Block block : after.blocks) {
+            newBlocks.add(block.label);
+            if (!block.instructions.equals(oldBlocks.get(block.label))) {
+                pending.add(block.label);
+                // Their old successors got definitions from them that may be gone now
+                pending.addAll(previous.blockSuccessors.getOrDefault(block.label, Collections.emptyList()));
+            }
+        }
+        for (String label : oldBlocks.keySet()) {
+            if (!newBlocks.contains(label)) {
+                pending.addAll(previous.blockSuccessors.getOrDefault(label, Collections.emptyList()));
+            }
+        }
+        Set<String> affected = new HashSet<>();
+        while (!pending.isEmpty()) {
+            String block = pending.poll();
+            if (newBlocks.contains(block) && affected.add(block)) {
+                pending.addAll(blockSuccessors.getOrDefault(block, Collections.emptyList()));
+            }
+        }
+        return affected;
     }
 
-    private static TreeMap<String, VariableState> analyzeBlock(String block, TreeMap<String, VariableState> preState) {
+    private boolean sameEnvironment(Snapshot previous) {
+        if (!symbols.equals(previous.symbols)) {
+            return false;
+        }
+        for (int var = 0; var < symbols.size(); var++) {
+            if (!Objects.equals(variableStates.get(var).getType(), previous.types.get(var))) {
+                return false;
+            }
+        }
+        return engine == previous.engine
+                && globalIds.equals(previous.globalIds)
+                && localParams.equals(previous.localParams)
+                && allAddressTakenVars.equals(previous.allAddressTakenVars)
+                && addressTakenVariables.equals(previous.addressTakenVariables)
+                && reachableTypesMap.equals(previous.reachableTypesMap)
+                && fnParamsGlobalsTypes.equals(previous.fnParamsGlobalsTypes);
+    }
+
+    // Blocks no edit can reach keep the previous fixpoint, renumbered to this run's
+    // program points, and only the blocks in front of affected ones are queued.
+    // Affected blocks start over from their initial state.
+    private boolean reusePreviousFixpoint(Snapshot previous, Set<String> affected) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (ProgramPoint.Instruction instruction : programPoints) {
+            ids.put(instruction.toString(), instruction.getId());
+        }
+        int[] renumber = new int[previous.programPoints.size()];
+        boolean identity = renumber.length == programPoints.size();
+        for (int i = 0; i < renumber.length; i++) {
+            renumber[i] = ids.getOrDefault(previous.programPoints.get(i), -1);
+            identity &= renumber[i] == i;
+        }
+
+        TreeMap<String, PersistentState> reused = new TreeMap<>();
+        for (Map.Entry<String, PersistentState> entry : preStates.entrySet()) {
+            String block = entry.getKey();
+            PersistentState old = previous.preStates.get(block);
+            if (affected.contains(block) || old == null) {
+                reused.put(block, entry.getValue());
+            } else if (identity) {
+                reused.put(block, old);
+            } else {
+                PersistentState renumbered = renumber(old, renumber);
+                if (renumbered == null) {
+                    return false;
+                }
+                reused.put(block, renumbered);
+            }
+        }
+        preStates = reused;
+        for (String block : previous.processedBlocks) {
+            if (affected.contains(block) || !preStates.containsKey(block)) {
+                continue;
+            }
+            processedBlocks.add(block);
+            for (String successor : blockSuccessors.getOrDefault(block, Collections.emptyList())) {
+                if (affected.contains(successor)) {
+                    worklist.add(block);
+                    break;
+                }
+            }
+        }
+        if (affected.contains("entry")) {
+            worklist.add("entry");
+            processedBlocks.add("entry");
+        }
+        return true;
+    }
+
+    // null if the state holds a point that no longer exists
+    private static PersistentState renumber(PersistentState state, int[] renumber) {
+        VariableState[] states = new VariableState[state.size()];
+        for (int var = 0; var < states.length; var++) {
+            VariableState varState = state.get(var);
+            if (varState == null) {
+                continue;
+            }
+            DefinitionSet points = varState.getDefinitionPoints();
+            DefinitionSet renumbered = new DefinitionSet();
+            for (int i = points.next(0); i >= 0; i = points.next(i + 1)) {
+                if (renumber[i] < 0) {
+                    return null;
+                }
+                renumbered.add(renumber[i]);
+            }
+            states[var] = varState.copyNew(renumbered);
+        }
+        return PersistentState.of(states);
+    }
+
+    private VariableState[] analyzeBlock(String block, VariableState[] preState, boolean recordUses) {
         for (ProgramPoint.Instruction operation : basicBlocksInstructions.get(block)) {
-            analyzeInstruction(preState ,operation);
+            DefinitionSet soln = recordUses ? reachingDefinitions[operation.getId()] : new DefinitionSet();
+            analyzeInstruction(preState, operation, soln);
         }
         return preState;
     }
 
-    private static TreeMap<String, VariableState> joinMaps(TreeMap<String, VariableState> map1, TreeMap<String, VariableState> map2) {
-        TreeMap<String, VariableState> safeMap1 = (map1 != null) ? new TreeMap<>(map1) : new TreeMap<>();
+    // Runs each block once over a state where every variable holds only a sentinel point.
+    // A variable that lost the sentinel was killed, the other points it holds are its GEN.
+    // Locals of the sparse partition are left out, SSA gives their definitions.
+    private void computeBlockSummaries(Map<String, BitSet> present) {
+        int sentinel = programPoints.size();
+        for (Map.Entry<String, BitSet> entry : present.entrySet()) {
+            String block = entry.getKey();
+            BitSet vars = entry.getValue();
+            VariableState[] probe = new VariableState[symbols.size()];
+            for (int var = vars.nextSetBit(0); var >= 0; var = vars.nextSetBit(var + 1)) {
+                probe[var] = variableStates.get(var).clone();
+                probe[var].getDefinitionPoints().set(sentinel);
+            }
+            analyzeBlock(block, probe, false);
 
-        TreeMap<String, VariableState> result = new TreeMap<>(safeMap1);
+            BlockSummary summary = new BlockSummary();
+            for (int var = vars.nextSetBit(0); var >= 0; var = vars.nextSetBit(var + 1)) {
+                DefinitionSet gen = probe[var].getDefinitionPoints();
+                boolean kill = !gen.contains(sentinel);
+                gen.remove(sentinel);
+                if (sparseVariables != null && sparseVariables.get(var)) {
+                    continue;
+                }
+                if (kill || !gen.isEmpty()) {
+                    summary.addVariable(var, kill, gen);
+                }
+            }
+            blockSummaries.put(block, summary);
+        }
+    }
 
-        for (Map.Entry<String, VariableState> entry : map2.entrySet()) {
-            String varName = entry.getKey();
-            VariableState stateFromMap2 = entry.getValue();
-            if (result.containsKey(varName)) {
-                VariableState stateFromMap1 = result.get(varName);
-                VariableState mergedState = stateFromMap1.join(stateFromMap2);
-                result.put(varName, mergedState);
-//                System.out.println("Merging state for variable '" + varName + "': " + stateFromMap1 + " ⊔ " + stateFromMap2 + " = " + mergedState);
-            } else {
-                result.put(varName, stateFromMap2);
-//                System.out.println("Adding new state for variable '" + varName + "': " + stateFromMap2);
+    // The transfer never adds variables to a state, so which variables a block sees
+    // at the fixpoint is just its own plus those of every block reaching it from entry.
+    private Map<String, BitSet> computeVariablePresence(TreeMap<String, VariableState[]> preStates) {
+        Map<String, BitSet> present = new HashMap<>();
+        Queue<String> pending = new LinkedList<>();
+        present.put("entry", presentVariables(preStates.get("entry")));
+        pending.add("entry");
+        while (!pending.isEmpty()) {
+            String block = pending.poll();
+            BitSet vars = present.get(block);
+            for (String successor : blockSuccessors.getOrDefault(block, new LinkedList<>())) {
+                BitSet successorVars = present.get(successor);
+                if (successorVars == null) {
+                    successorVars = presentVariables(preStates.get(successor));
+                    present.put(successor, successorVars);
+                    successorVars.or(vars);
+                    pending.add(successor);
+                } else if (!containsAll(successorVars, vars)) {
+                    successorVars.or(vars);
+                    pending.add(successor);
+                }
             }
         }
+        return present;
+    }
+
+    private static BitSet presentVariables(VariableState[] state) {
+        BitSet vars = new BitSet();
+        for (int var = 0; var < state.length; var++) {
+            if (state[var] != null) {
+                vars.set(var);
+            }
+        }
+        return vars;
+    }
+
+    private static boolean containsAll(BitSet set, BitSet subset) {
+        BitSet missing = (BitSet) subset.clone();
+        missing.andNot(set);
+        return missing.isEmpty();
+    }
+
+    // Locals of the analyzed function shadow globals of the same name
+    int resolve(String name) {
+        int id = symbols.lookup(functionName + "." + name);
+        if (id < 0) {
+            id = symbols.lookup(name);
+        }
+        return id;
+    }
 
-        return result;
+    private int internVariable(String name, VariableState state) {
+        int id = symbols.intern(name);
+        if (id == variableStates.size()) {
+            variableStates.add(state);
+        } else {
+            variableStates.set(id, state);
+        }
+        return id;
     }
 
-    static void calculateReachableTypes() {
-        for(String ptype: PTRS){
+    void calculateReachableTypes() {
+        for(LirType ptype: PTRS){
             VariableState newState = new VariableState();
             newState.setType(ptype);
             ReachableTypes(ptype);
             fakeHeapStates.putIfAbsent("fake_" + ptype, newState);
         }
-        boolean updated;
-        do {
-            updated = false;
-            TreeMap<String, Set<String>> expandedMap = new TreeMap<>();
-
-            for (Map.Entry<String, Set<String>> entry : reachableTypesMap.entrySet()) {
-                String type = entry.getKey();
-                Set<String> directReachableTypes = new HashSet<>(entry.getValue());
-
-                for (String subtype : new HashSet<>(entry.getValue())) {
-                    Set<String> indirectReachableTypes = reachableTypesMap.get(subtype);
-                    if (indirectReachableTypes != null && !indirectReachableTypes.isEmpty()) {
-                        boolean changed = directReachableTypes.addAll(indirectReachableTypes.stream().filter(s -> !s.equals(type)).collect(Collectors.toSet()));
-                        if (changed) {
-                            updated = true;
-                        }
-                    }
-                }
-                expandedMap.put(type, directReachableTypes);
-            }
-
-            reachableTypesMap = expandedMap;
-        } while (updated);
+        // Transitive closure of the direct edges, see TypeClosure
+        reachableTypesMap = TypeClosure.close(reachableTypesMap);
     }
 
-    private static void initializeVarsDefinitions(TreeMap<String, TreeMap<String, VariableState>> preStates){
-        TreeMap<String, VariableState> entryStates = preStates.get("entry");
-        for(String ptype: PTRS){
+    private void internFakeHeapVariables() {
+        for(LirType ptype: PTRS){
             //For each type τ ∈ ReachableTypes(PTRS τ ), create a fake variable
-            for(String subtype: reachableTypesMap.get(ptype)){
+            for(LirType subtype: reachableTypesMap.get(ptype)){
                 VariableState newState = new VariableState();
                 newState.setType(subtype);
                 fakeHeapStates.putIfAbsent("fake_" + subtype, newState);
             }
         }
+        for (Map.Entry<String, VariableState> entry : fakeHeapStates.entrySet()) {
+            internVariable(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void initializeVarsDefinitions(TreeMap<String, VariableState[]> preStates){
+        VariableState[] entryStates = preStates.get("entry");
         //alloc fake heap vars
         for (Map.Entry<String, VariableState> entry : fakeHeapStates.entrySet()) {
-            String fakeVarName = entry.getKey();
-            String type = entry.getValue().getType();
-            entryStates.put(fakeVarName, entry.getValue());
-            allAddressTakenVars.add(fakeVarName);
-            addressTakenVariables.computeIfAbsent(type, k -> new HashSet<>()).add(fakeVarName);
+            int fakeVar = symbols.lookup(entry.getKey());
+            LirType type = entry.getValue().getType();
+            entryStates[fakeVar] = entry.getValue();
+            allAddressTakenVars.add(fakeVar);
+            addressTakenVariables.computeIfAbsent(type, k -> new HashSet<>()).add(fakeVar);
         }
+        indexAddressTakenVariables();
     }
-    static void ReachableTypes(String type) {
-        if(type.length() == 0){
-            return;
+
+    private void indexAddressTakenVariables() {
+        // Sized by the types this function uses, not by every type of the module
+        int types = 0;
+        for (VariableState state : variableStates) {
+            if (state.getType() != null) {
+                types = Math.max(types, state.getType().id + 1);
+            }
         }
-        if (reachableTypesMap.containsKey(type)) {
-            return;
+        for (LirType type : reachableTypesMap.keySet()) {
+            if (type != null) {
+                types = Math.max(types, type.id + 1);
+            }
+        }
+        addressTakenByType = new BitSet[types];
+        reachableAddressTaken = new BitSet[types];
+        for (Map.Entry<LirType, Set<Integer>> entry : addressTakenVariables.entrySet()) {
+            BitSet vars = new BitSet(symbols.size());
+            for (int var : entry.getValue()) {
+                vars.set(var);
+            }
+            addressTakenByType[entry.getKey().id] = vars;
         }
+    }
 
-        reachableTypesMap.putIfAbsent(type, new HashSet<>());
+    private BitSet addressTaken(LirType type) {
+        BitSet vars = type == null || type.id >= addressTakenByType.length ? null : addressTakenByType[type.id];
+        return vars == null ? NO_VARIABLES : vars;
+    }
 
-        // Base case: Simple types
-        if (!type.contains("->") && !type.contains("(") && !type.startsWith("&")) {
+    // ⋃ addr_taken[τ'] for τ' ∈ ReachableTypes(τ), null when τ has no reachable types
+    private BitSet reachableAddressTaken(LirType type) {
+        if (type.id < reachableAddressTaken.length && reachableAddressTaken[type.id] != null) {
+            return reachableAddressTaken[type.id];
+        }
+        Set<LirType> reachable = reachableTypesMap.get(type);
+        if (reachable == null) {
+            return null;
+        }
+        BitSet vars = new BitSet(symbols.size());
+        for (LirType reachableType : reachable) {
+            vars.or(addressTaken(reachableType));
+        }
+        if (type.id < reachableAddressTaken.length) {
+            reachableAddressTaken[type.id] = vars;
+        }
+        return vars;
+    }
+    void ReachableTypes(LirType type) {
+        if (type == null || reachableTypesMap.containsKey(type)) {
             return;
         }
-        if (type.contains("->")) {
-            String[] parts = type.split("\\s*->\\s*");
-            for (String part : parts) {
-                if (part.contains("(")) {
-                    String parameters = part.substring(part.indexOf("(") + 1, part.lastIndexOf(")"));
-                    for (String parameter : parameters.split("\\s*,\\s*")) {
-                        if(parameter.length()>0) {
-                            ReachableTypes(parameter);
-                            reachableTypesMap.get(type).add(parameter);
-                            reachableTypesMap.get(type).addAll(reachableTypesMap.getOrDefault(parameter, new HashSet<>()));
-                        }
-                    }
-                } else {
-                    ReachableTypes(part);
-                    reachableTypesMap.get(type).addAll(reachableTypesMap.getOrDefault(part, new HashSet<>()));
-                }
+
+        Set<LirType> reachable = new HashSet<>();
+        reachableTypesMap.put(type, reachable);
+
+        // A function, or a pointer to one however deep: its parameters and what they
+        // reach, and what the result type reaches
+        LirType function = type.function();
+        if (function != null) {
+            for (LirType parameter : function.params) {
+                ReachableTypes(parameter);
+                reachable.add(parameter);
+                reachable.addAll(reachableTypesMap.get(parameter));
             }
+            ReachableTypes(function.result);
+            reachable.addAll(reachableTypesMap.get(function.result));
             return;
         }
-        // Handling pointers
-        if (type.startsWith("&")) {
-            String pointedType = type.substring(1);
-            ReachableTypes(pointedType);
-            reachableTypesMap.get(type).add(pointedType);
-            reachableTypesMap.get(type).addAll(reachableTypesMap.getOrDefault(pointedType, new HashSet<>())); // Add all reachable types from the pointed type
+        // Handling pointers, simple types (int, structs) reach nothing by themselves
+        if (type.isPointer()) {
+            ReachableTypes(type.pointee);
+            reachable.add(type.pointee);
+            reachable.addAll(reachableTypesMap.get(type.pointee)); // Add all reachable types from the pointed type
         }
     }
 
 
-    private static void analyzeInstruction(TreeMap<String, VariableState> postState, ProgramPoint.Instruction input) {
-        String instruction = input.getInstructure();
-        Pattern operationPattern = Pattern.compile("\\$(store|load|alloc|cmp|gep|copy|call_ext|addrof|arith|gfp|ret|call_dir|call_idr|jump|branch)");
-        Matcher matcher = operationPattern.matcher(instruction);
-        String[] parts = instruction.split(" ");
-        String defVar = parts[0];
-        if(defVar.equals("_t20")|| defVar.equals("_t19")){
-            String a = "";
+    private static VariableState get(VariableState[] state, int var) {
+        return var < 0 ? null : state[var];
+    }
+
+    // soln ← soln ∪ σ[v] for every v in vars present in the state
+    private static void joinDefinitionPoints(DefinitionSet soln, VariableState[] state, BitSet vars) {
+        for (int var = vars.nextSetBit(0); var >= 0; var = vars.nextSetBit(var + 1)) {
+            if (state[var] != null) {
+                soln.join(state[var].getDefinitionPoints());
+            }
         }
-        VariableState defState = postState.get(defVar);
-        if (matcher.find()) {
-            String opera = matcher.group(1);
-            switch (opera) {
-                case "store":
-                    String useVar = parts[1];
-                    String valueVar = parts[2];
-                    if(useVar.equals("_t41")){
-                        String a = "";
-                    }
-                    String typeOfvalueVar = "int";
-                    if(postState.get(valueVar) != null){
-                        typeOfvalueVar = postState.get(valueVar).getType();
-                    }
-                    VariableState useState = postState.get(useVar);
-                    VariableState valueState = postState.get(valueVar);
-                    //∀v∈USE,soln[pp] ← soln[pp] ∪ σ[v]
-                    if (useState!= null) {
-                        reachingDefinitions.get(input.toString()).addAll(useState.getDefinitionPoints());
-                    }
-                    if (valueState!= null) {
-                        reachingDefinitions.get(input.toString()).addAll(valueState.getDefinitionPoints());
-                    }
+    }
 
-                    //  ∀x∈DEF,σ[x] ← σ[x] ∪ {pp}
-                    if(typeOfvalueVar!=null && addressTakenVariables.get(typeOfvalueVar) != null) {
-                        for (String addTaken : addressTakenVariables.get(typeOfvalueVar)) {
-                            if (postState.containsKey(addTaken)) {
-                                postState.get(addTaken).addDefinitionPoint(input);
-                            }
-                        }
-                    }
-                    break;
-                case "load":
-//                    x marks all address-taken variables as potentially depending on this instruction.
-                    String loadVar = parts[3];
-                    VariableState loadState = postState.get(loadVar);
-                    if(loadState != null) {
-                        reachingDefinitions.get(input.toString()).addAll(loadState.definitionPoints);
-                    }
-                    //∀v∈USE,soln[pp] ← soln[pp] ∪ σ[v]
-                    if(defState.getType() != null && addressTakenVariables.get(defState.getType()) != null) {
-                        for (String addTaken : addressTakenVariables.get(defState.getType())) {
-                            VariableState takenState = postState.get(addTaken);
-                            if (takenState != null) {
-                                reachingDefinitions.get(input.toString()).addAll(takenState.getDefinitionPoints());
-                            }
-                        }
-                    }
-                    // σ[x] ← {pp}
-                    if(defState != null){
-                        defState.setDefinitionPoint(input);
-                    }
-                    break;
-                case "alloc":
-                    String usedVar0 = parts[3];
-                    VariableState usedState0 = postState.get(usedVar0);
+    // σ[v] ← σ[v] ∪ {pp} for every v in vars present in the state
+    private static void addDefinitionPoint(VariableState[] state, BitSet vars, ProgramPoint.Instruction input) {
+        for (int var = vars.nextSetBit(0); var >= 0; var = vars.nextSetBit(var + 1)) {
+            if (state[var] != null) {
+                state[var].addDefinitionPoint(input);
+            }
+        }
+    }
 
-                    //soln[pp] ← soln[pp] ∪ σ[v]
-                    if (usedState0 != null) {
-                        reachingDefinitions.get(input.toString()).addAll(usedState0.getDefinitionPoints());
-                    }
-                    //σ[x] ← {pp}
-                    defState.setDefinitionPoint(input);
-                    break;
-                case "cmp":
-                    String usedVar3 = parts[4];
-                    String usedVar4 = parts[5];
-                    VariableState usedState3 = postState.get(usedVar3);
-                    VariableState usedState4 = postState.get(usedVar4);
-                    //soln[pp] ← soln[pp] ∪ σ[v]
-                    if (usedState3 != null) {
-                        reachingDefinitions.get(input.toString()).addAll(usedState3.getDefinitionPoints());
-                    }
-                    if (usedState4 != null) {
-                        reachingDefinitions.get(input.toString()).addAll(usedState4.getDefinitionPoints());
-                    }
-                    //σ[x] ← {pp}
-                    defState.setDefinitionPoint(input);
-                    break;
-                case "arith":
-                    String usedVar1 = parts[4];
-                    String usedVar2 = parts[5];
-                    VariableState usedState1 = postState.get(usedVar1);
-                    VariableState usedState2 = postState.get(usedVar2);
-                    //soln[pp] ← soln[pp] ∪ σ[v]
-                    if (usedState1 != null) {
-                        reachingDefinitions.get(input.toString()).addAll(usedState1.getDefinitionPoints());
-                    }
-                    if (usedState2 != null) {
-                        reachingDefinitions.get(input.toString()).addAll(usedState2.getDefinitionPoints());
-                    }
-                    //σ[x] ← {pp}
-                    defState.setDefinitionPoint(input);
-                    break;
-                case "gep":
-                    String gepVar1 = parts[3];
-                    String gepVar2 = parts[4];
-                    if(gepVar1.equals("id4")){
-                        String a = "";
-                    }
-                    VariableState gepState1 = postState.get(gepVar1);
-                    VariableState gepState2 = postState.get(gepVar2);
-                    //soln[pp] ← soln[pp] ∪ σ[v]
-                    if (gepState1 != null) {
-                        reachingDefinitions.get(input.toString()).addAll(gepState1.getDefinitionPoints());
-                    }
-                    if (gepState2 != null) {
-                        reachingDefinitions.get(input.toString()).addAll(gepState2.getDefinitionPoints());
-                    }
-                    //σ[x] ← {pp}
-                    defState.setDefinitionPoint(input);
-                    break;
-                case "gfp":
-                //∀v∈USE,soln[pp]←soln[pp]∪σ[v] • σ[x] ← {pp}
-                    String gfpVar1 = parts[3];
-                    String gfpVar2 = parts[4];
-                    VariableState gfpState1 = postState.get(gfpVar1);
-//                    VariableState gfpState2 = postState.get(gfpVar2);
-                    if(parts[3].equals("id16")){
-                        String a = "";
-                    }
-                    //soln[pp] ← soln[pp] ∪ σ[v]
-                    if (gfpState1 != null) {
-                        reachingDefinitions.get(input.toString()).addAll(gfpState1.getDefinitionPoints());
+    private void analyzeInstruction(VariableState[] postState, ProgramPoint.Instruction input, DefinitionSet soln) {
+        ProgramPoint.Decoded decoded = input.getDecoded();
+        int[] uses = decoded.uses;
+        VariableState defState = get(postState, decoded.def);
+        switch (decoded.opcode) {
+            case STORE:
+                VariableState useState = get(postState, uses[0]);
+                VariableState valueState = get(postState, uses[1]);
+                LirType typeOfvalueVar = LirType.INT;
+                if(valueState != null){
+                    typeOfvalueVar = valueState.getType();
+                }
+                //∀v∈USE,soln[pp] ← soln[pp] ∪ σ[v]
+                if (useState!= null) {
+                    soln.join(useState.getDefinitionPoints());
+                }
+                if (valueState!= null) {
+                    soln.join(valueState.getDefinitionPoints());
+                }
+
+                //  ∀x∈DEF,σ[x] ← σ[x] ∪ {pp}
+                addDefinitionPoint(postState, addressTaken(typeOfvalueVar), input);
+                break;
+            case LOAD:
+//                x marks all address-taken variables as potentially depending on this instruction.
+                VariableState loadState = get(postState, uses[0]);
+                if(loadState != null) {
+                    soln.join(loadState.definitionPoints);
+                }
+                //∀v∈USE,soln[pp] ← soln[pp] ∪ σ[v]
+                joinDefinitionPoints(soln, postState, addressTaken(defState.getType()));
+                // σ[x] ← {pp}
+                defState.setDefinitionPoint(input);
+                break;
+            case ALLOC:
+            case CMP:
+            case ARITH:
+            case GEP:
+            case GFP:
+            case COPY:
+                //soln[pp] ← soln[pp] ∪ σ[v]
+                for (int use : uses) {
+                    VariableState usedState = get(postState, use);
+                    if (usedState != null) {
+                        soln.join(usedState.getDefinitionPoints());
                     }
-//                    if (gfpState2 != null) {
-//                        reachingDefinitions.get(input.toString()).addAll(gfpState2.getDefinitionPoints());
-//                    }
-                    //σ[x] ← {pp}
+                }
+                //σ[x] ← {pp}
+                if(defState != null){
                     defState.setDefinitionPoint(input);
-                    break;
-                case "copy":
-                    if (parts.length > 3) {
-                        String usedVar = parts[3];
-                        VariableState usedState = postState.get(usedVar);
-                        if(usedVar.equals("g1")){
-                            String a ="";
-                        }
-                        if(usedState != null) {
-                            //soln[pp] ← soln[pp] ∪ σ[v]
-                            Set<ProgramPoint.Instruction> set = reachingDefinitions.get(input.toString());
-                            set.addAll(usedState.definitionPoints);
-                        }
-                        if(defState != null){
-                            defState.setDefinitionPoint(input);
-                            postState.put(defVar, defState);
-                        }
-                    }
-                    break;
-                case "call_ext":
-                    // ∀v∈USE,soln[pp] ← soln[pp] ∪ σ[v]
-                    String varFnName1 = null;
-                    Set<String> typeSet1 = new HashSet<>();
-                    if(instruction.contains("(") && instruction.contains(")")){
-                        Pattern patternFn = Pattern.compile("(\\w+)\\((.*?)\\)");
-                        Matcher matcherFn = patternFn.matcher(instruction);
-
-                        if (matcherFn.find()) {
-                            varFnName1 = matcherFn.group(1); // Function name
-                            String functionArgs = matcherFn.group(2); // All arguments
-
-                            if (!functionArgs.isEmpty()) {
-                                String[] args = functionArgs.split("\\s*,\\s*");
-                                for(String arg : args){
-                                    VariableState argState = postState.get(arg);
-                                    if(argState!=null) {
-                                        typeSet1.addAll(reachableTypesMap.get(argState.getType()));
-                                        reachingDefinitions.get(input.toString()).addAll(argState.getDefinitionPoints());
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    // WDEF =[{addr_taken[τ]|τ ∈ ReachViaArgs ∪ ReachViaGlobals} ∪ Globals.
-                    if(fnParamsGlobalsTypes.size() != 0 && fnParamsGlobalsTypes.get(varFnName1)!=null) {
-                        for (String type1 : fnParamsGlobalsTypes.get(varFnName1)) {
-                            if(reachableTypesMap.get(type1)!=null) {
-                                typeSet1.addAll(reachableTypesMap.get(type1));
-                            }
-                        }
-                    }
-                    for (String setType : typeSet1) {
-                        for (String addTaken : addressTakenVariables.get(setType)) {
-                            if (postState.containsKey(addTaken)) {
-                                reachingDefinitions.get(input.toString()).addAll(postState.get(addTaken).getDefinitionPoints());
-                            }
-                        }
-                    }
-                    for(String globalVar : globalVars.keySet()){
-                        if (postState.containsKey(globalVar)) {
-                            VariableState globalState = postState.get(globalVar);
-                            reachingDefinitions.get(input.toString()).addAll(globalState.getDefinitionPoints());
-                            globalState.addDefinitionPoint(input);
-                        }
-                    }
-                    for (String type : typeSet1) {
-                        if(addressTakenVariables.get(type) != null) {
-                            for (String addTaken : addressTakenVariables.get(type)) {
-                                if (postState.containsKey(addTaken)) {
-                                    postState.get(addTaken).addDefinitionPoint(input);
-                                }
-                            }
-                        }
-                    }
-                    if(defState != null) {
-                        defState.setDefinitionPoint(input);
-                    }
-                    break;
-                case "call_dir":
-//                    WDEF =[{addr_taken[τ]|τ ∈ ReachViaArgs ∪ ReachViaGlobals}∪Globals.
-//                    ∀v∈USE,soln[pp] ← soln[pp] ∪ σ[v]
-                    String varFnName2 = null;
-                    Set<String> typeSet2 = new HashSet<>();
-                    if(defVar.equals("_t21")){
-                        String a = "";
-                    }
-                    if(instruction.contains("(") && instruction.contains(")")){
-                        Pattern patternFn = Pattern.compile("(\\w+)\\((.*?)\\)");
-                        Matcher matcherFn = patternFn.matcher(instruction);
-
-                        if (matcherFn.find()) {
-                            varFnName2 = matcherFn.group(1); // Function name
-                            String functionArgs = matcherFn.group(2); // All arguments
-
-                            if (!functionArgs.isEmpty()) {
-                                String[] args = functionArgs.split("\\s*,\\s*");
-                                for(String arg : args){
-                                    VariableState argState = postState.get(arg);
-                                    if(argState!=null) {
-                                        typeSet2.addAll(reachableTypesMap.get(argState.getType()));
-                                        reachingDefinitions.get(input.toString()).addAll(argState.getDefinitionPoints());
-                                    }
-                                }
-                            }
-                        }
+                }
+                break;
+            case CALL_EXT:
+            case CALL_DIR:
+//                WDEF =[{addr_taken[τ]|τ ∈ ReachViaArgs ∪ ReachViaGlobals}∪Globals.
+                // ∀v∈USE,soln[pp] ← soln[pp] ∪ σ[v]
+                BitSet written = new BitSet(symbols.size());
+                for(int arg : decoded.args){
+                    VariableState argState = get(postState, arg);
+                    if(argState!=null) {
+                        written.or(reachableAddressTaken(argState.getType()));
+                        soln.join(argState.getDefinitionPoints());
                     }
-                    // WDEF =[{addr_taken[τ]|τ ∈ ReachViaArgs ∪ ReachViaGlobals} ∪ Globals.
-                    if(fnParamsGlobalsTypes.size() != 0 && fnParamsGlobalsTypes.get(varFnName2)!=null) {
-                        for (String type2 : fnParamsGlobalsTypes.get(varFnName2)) {
-                            if(reachableTypesMap.get(type2)!=null) {
-                                typeSet2.addAll(reachableTypesMap.get(type2));
-                            }
+                }
+                // WDEF =[{addr_taken[τ]|τ ∈ ReachViaArgs ∪ ReachViaGlobals} ∪ Globals.
+                if(fnParamsGlobalsTypes.size() != 0 && fnParamsGlobalsTypes.get(decoded.callee)!=null) {
+                    for (LirType paramType : fnParamsGlobalsTypes.get(decoded.callee)) {
+                        BitSet reachable = reachableAddressTaken(paramType);
+                        if(reachable != null) {
+                            written.or(reachable);
                         }
                     }
-                    for (String type : typeSet2) {
-                        if(addressTakenVariables.get(type) != null) {
-                            for (String addTaken : addressTakenVariables.get(type)) {
-                                if (postState.containsKey(addTaken)) {
-                                    reachingDefinitions.get(input.toString()).addAll(postState.get(addTaken).getDefinitionPoints());
-                                }
-                            }
-                        }
+                }
+                joinDefinitionPoints(soln, postState, written);
+                for(int globalVar : globalIds){
+                    VariableState globalState = postState[globalVar];
+                    if (globalState != null) {
+                        soln.join(globalState.getDefinitionPoints());
+                        globalState.addDefinitionPoint(input);
                     }
-                    for(String globalVar : globalVars.keySet()){
-                        if (postState.containsKey(globalVar)) {
-                            VariableState globalState = postState.get(globalVar);
-                            reachingDefinitions.get(input.toString()).addAll(globalState.getDefinitionPoints());
-                            globalState.addDefinitionPoint(input);
-                        }
+                }
+                addDefinitionPoint(postState, written, input);
+                if(defState != null) {
+                    defState.setDefinitionPoint(input);
+                }
+                break;
+            case CALL_IDR:
+                // ∀v∈USE,soln[pp] ← soln[pp] ∪ σ[v]
+                VariableState fnState = get(postState, decoded.calleeVar);
+                if(fnState != null) {
+                    soln.join(fnState.getDefinitionPoints());
+                }
+                for(int arg : decoded.args){
+                    VariableState argState = get(postState, arg);
+                    if(argState!=null) {
+                        soln.join(argState.getDefinitionPoints());
                     }
-                    for (String type : typeSet2) {
-                        if(addressTakenVariables.get(type) != null) {
-                            for (String addTaken : addressTakenVariables.get(type)) {
-                                if (postState.containsKey(addTaken)) {
-                                    postState.get(addTaken).addDefinitionPoint(input);
-                                }
-                            }
+                }
+                // WDEF =[{addr_taken[τ]|τ ∈ ReachViaArgs ∪ ReachViaGlobals} ∪ Globals.
+                if(fnParamsGlobalsTypes.size() != 0) {
+                    BitSet written3 = new BitSet(symbols.size());
+                    for (String type3 : fnParamsGlobalsTypes.keySet()) {
+                        LirType namedType = typeTable.existing(type3);
+                        BitSet reachable = namedType == null ? null : reachableAddressTaken(namedType);
+                        if(reachable != null) {
+                            written3.or(reachable);
                         }
                     }
-                    if(defState != null){
-                        defState.setDefinitionPoint(input);
+                    addDefinitionPoint(postState, written3, input);
+                }
+                for(int globalVar : globalIds){
+                    VariableState globalState = postState[globalVar];
+                    if (globalState != null && globalVar != decoded.calleeVar) {
+                        soln.join(globalState.getDefinitionPoints());
+                        globalState.addDefinitionPoint(input);
                     }
-                    break;
-                case "call_idr":
-                    // ∀v∈USE,soln[pp] ← soln[pp] ∪ σ[v]
-                    String varFnName3 = null;
-                    Set<String> typeSet3 = new HashSet<>();
-                    VariableState fnState = new VariableState();
-                    if(instruction.contains("(") && instruction.contains(")")){
-                        Pattern patternFn = Pattern.compile("(\\w+)\\((.*?)\\)");
-                        Matcher matcherFn = patternFn.matcher(instruction);
-
-                        if (matcherFn.find()) {
-                            varFnName3 = matcherFn.group(1); // Function name
-                            String functionArgs = matcherFn.group(2); // All arguments
-
-                            fnState = postState.get(varFnName3);
-                            if(fnState != null) {
-                                reachingDefinitions.get(input.toString()).addAll(fnState.getDefinitionPoints());
-                            }
+                }
+                if(defState != null) {
+                    defState.setDefinitionPoint(input);
+                }
+                if(fnState != null) {
+                    fnState.addDefinitionPoint(input);
+                }
+                break;
+            case ADDROF:
+                //USE is null
+                defState.setDefinitionPoint(input);
+                break;
+            case BRANCH:
+            case RET:
+                // branch and ret maybe integer
+                //∀v∈USE,soln[pp] ← soln[pp] ∪ σ[v]
+                VariableState usedState = get(postState, uses[0]);
+                if(usedState != null) {
+                    soln.join(usedState.getDefinitionPoints());
+                }
+                break;
+            default:
+                break;
+        }
+    }
 
-                            if (!functionArgs.isEmpty()) {
-                                String[] args = functionArgs.split("\\s*,\\s*");
-                                for(String arg : args){
-                                    VariableState argState = postState.get(arg);
-                                    if(argState!=null) {
-                                        reachingDefinitions.get(input.toString()).addAll(argState.getDefinitionPoints());
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    // WDEF =[{addr_taken[τ]|τ ∈ ReachViaArgs ∪ ReachViaGlobals} ∪ Globals.
-                    if(fnParamsGlobalsTypes.size() != 0) {
-                        for (String type3 : fnParamsGlobalsTypes.keySet()) {
-                            if(reachableTypesMap.get(type3)!=null) {
-                                typeSet3.addAll(reachableTypesMap.get(type3));
-                            }
-                        }
-                        for (String setType : typeSet3) {
-                            for (String addTaken : addressTakenVariables.get(setType)) {
-                                if (postState.containsKey(addTaken)) {
-                                    postState.get(addTaken).addDefinitionPoint(input);
-                                }
-                            }
-                        }
-                    }
-                    for(String globalVar : globalVars.keySet()){
-                        if (postState.containsKey(globalVar) && !globalVar.equals(varFnName3)) {
-                            VariableState globalState = postState.get(globalVar);
-                            reachingDefinitions.get(input.toString()).addAll(globalState.getDefinitionPoints());
-                            globalState.addDefinitionPoint(input);
-                        }
-                    }
-                    for (String type : typeSet3) {
-                        if(addressTakenVariables.get(type) != null) {
-                            for (String addTaken : addressTakenVariables.get(type)) {
-                                if (postState.containsKey(addTaken)) {
-                                    postState.get(addTaken).addDefinitionPoint(input);
-                                }
-                            }
-                        }
-                    }
-                    if(defState != null) {
-                        defState.setDefinitionPoint(input);
-                    }
-                    if(fnState != null) {
-                        fnState.addDefinitionPoint(input);
-                    }
-                    break;
-                case "addrof":
-                    if (parts.length > 2) {
-                        //USE is null
-                        defState.setDefinitionPoint(input);
-                    }
-                    break;
-                case "jump":
-                    String targetBlockJump = extractTargetBlock(instruction);
-                    break;
-                case "branch":
-                    String usedVar5 = parts[1];
-                    VariableState usedState5 = postState.get(usedVar5);
-                    // branch maybe integer
-                    //∀v∈USE,soln[pp] ← soln[pp] ∪ σ[v]
-                    if(usedState5 != null) {
-                        reachingDefinitions.get(input.toString()).addAll(usedState5.getDefinitionPoints());
-                    }
-                    break;
-                case "ret":
-                    if(parts.length>0) {
-                        String retVar = parts[1];
-                        // ret could return integer
-                        VariableState retState = postState.get(retVar);
-                        if(retState != null) {
-                            reachingDefinitions.get(input.toString()).addAll(retState.getDefinitionPoints());
+    private static final Pattern OPERATION_PATTERN = Pattern.compile("\\$(store|load|alloc|cmp|gep|copy|call_ext|addrof|arith|gfp|ret|call_dir|call_idr|jump|branch)");
+    private static final Pattern CALL_PATTERN = Pattern.compile("(\\w+)\\((.*?)\\)");
+
+    private ProgramPoint.Decoded decodeInstruction(String instruction) {
+        Matcher matcher = OPERATION_PATTERN.matcher(instruction);
+        if (!matcher.find()) {
+            return new ProgramPoint.Decoded(ProgramPoint.Opcode.NONE, -1, new int[0], null, -1, new int[0]);
+        }
+        ProgramPoint.Opcode opcode = ProgramPoint.Opcode.valueOf(matcher.group(1).toUpperCase());
+        String[] parts = instruction.split(" ");
+        int def = resolve(parts[0]);
+        int[] uses = new int[0];
+        switch (opcode) {
+            case STORE:
+                uses = resolveAll(parts[1], parts[2]);
+                break;
+            case LOAD:
+            case ALLOC:
+            case GFP:
+                uses = resolveAll(parts[3]);
+                break;
+            case CMP:
+            case ARITH:
+                uses = resolveAll(parts[4], parts[5]);
+                break;
+            case GEP:
+                uses = resolveAll(parts[3], parts[4]);
+                break;
+            case COPY:
+                if (parts.length > 3) {
+                    uses = resolveAll(parts[3]);
+                } else {
+                    opcode = ProgramPoint.Opcode.NONE;
+                }
+                break;
+            case ADDROF:
+                if (parts.length <= 2) {
+                    opcode = ProgramPoint.Opcode.NONE;
+                }
+                break;
+            case BRANCH:
+            case RET:
+                if (parts.length > 1) {
+                    uses = resolveAll(parts[1]);
+                } else {
+                    opcode = ProgramPoint.Opcode.NONE;
+                }
+                break;
+            case CALL_EXT:
+            case CALL_DIR:
+            case CALL_IDR:
+                String callee = null;
+                int[] args = new int[0];
+                if(instruction.contains("(") && instruction.contains(")")){
+                    Matcher matcherFn = CALL_PATTERN.matcher(instruction);
+                    if (matcherFn.find()) {
+                        callee = matcherFn.group(1); // Function name
+                        String functionArgs = matcherFn.group(2); // All arguments
+                        if (!functionArgs.isEmpty()) {
+                            args = resolveAll(functionArgs.split("\\s*,\\s*"));
                         }
                     }
-                    break;
-                default:
-                    break;
-            }
+                }
+                int calleeVar = callee == null ? -1 : resolve(callee);
+                return new ProgramPoint.Decoded(opcode, def, uses, callee, calleeVar, args);
+            default:
+                break;
         }
+        return new ProgramPoint.Decoded(opcode, def, uses, null, -1, new int[0]);
     }
 
+    private int[] resolveAll(String... names) {
+        int[] ids = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            ids[i] = resolve(names[i]);
+        }
+        return ids;
+    }
 
-    private static void parseLirFile(String filePath, String functionName) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String currentBlock = null;
-            boolean isMainFunction = false;
-            boolean isOtherFunction = false;
-            boolean isStruct = false;
-            String structName = null;
-            int index = 0;
+    void loadFunction() {
+        for (LirModule.Declaration declaration : module.declarations) {
+            if (declaration instanceof LirModule.Struct) {
+                LirModule.Struct struct = (LirModule.Struct) declaration;
+                LirType structType = typeTable.struct(struct.name);
+                reachableTypesMap.putIfAbsent(structType, new HashSet<>());
+                for (String[] field : struct.fields) {
+                    LirType varType = typeTable.parse(field[1]);
+                    reachableTypesMap.computeIfAbsent(structType, k->new HashSet<>()).add(varType);
+                    ReachableTypes(varType);
+                }
+            } else if (declaration instanceof LirModule.Global) {
+                LirModule.Global global = (LirModule.Global) declaration;
+                String varName = global.name;
+                LirType varType = typeTable.parse(global.type);
+                ReachableTypes(varType);
+                boolean isNewGlobal = globalVars.putIfAbsent(varName, varType) == null;
+                reachableTypesMap.computeIfAbsent(varType, k -> new HashSet<>());
+                ReachableTypes(varType);
+                VariableState globalState = new VariableState();
+                globalState.setType(varType);
+                int globalVar = internVariable(varName, globalState);
+                if (isNewGlobal) {
+                    globalIds.add(globalVar);
+                }
+                addressTakenVariables.computeIfAbsent(varType, k -> new HashSet<>()).add(globalVar);
+                if(varType.containsPointer()){
+                    PTRS.add(varType);
+                }
+            } else if (declaration instanceof LirModule.Function) {
+                LirModule.Function function = (LirModule.Function) declaration;
+                if (function.name.equals(functionName)) {
+                    loadAnalyzedFunction(function);
+                } else {
+                    loadOtherFunction(function);
+                }
+            }
+        }
+        numberProgramPoints();
+        for (ProgramPoint.Instruction instruction : programPoints) {
+            instruction.setDecoded(decodeInstruction(instruction.getInstructure()));
+        }
+    }
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if(line.contains("$call_ext")){
-                    String a = "";
-                }
-                if(line.length() == 0) continue;
-                if (line.startsWith("fn "+functionName)) {
-                    isMainFunction = true;
-                    if(line.contains("->") && line.contains("(")) {
-                        String paramSubstring = line.substring(line.indexOf('(') + 1, line.indexOf(')'));
-                        StringBuilder transformedPart = new StringBuilder();
-                        int parenthesisLevel = 0;
-                        for (char c : paramSubstring.toCharArray()) {
-                            if (c == '(') {
-                                parenthesisLevel++;
-                            }else if (c == ')'){
-                                parenthesisLevel--;
-                            } else if (c == ',' && parenthesisLevel > 0){
-                                c = '|';
-                            }
-                            transformedPart.append(c);
-                        }
-                        fnParamsGlobalsTypes.putIfAbsent(functionName, new HashSet<>());
-                        if(paramSubstring.length()>0) {
-                            String[] variables = paramSubstring.split(",\\s*");
-                            for (String varDeclaration : variables) {
-                                String[] parts = varDeclaration.split(":");
-                                String varName = parts[0].trim();
-                                // just get int type
-                                String type = parts[1].replace("|", ",").trim();
-                                VariableState newState = new VariableState();
-                                fnParamsGlobalsTypes.computeIfAbsent(functionName, k -> new HashSet<>()).add(type);
-                                newState.setType(type);
-                                fakeHeapStates.putIfAbsent("fake_" + type, newState);
-                                if (type.startsWith("&")) {
-                                    newState.setPointsTo(type.substring(1));
-                                    PTRS.add(type);
-                                }
-                                localParams.add(varName);
-                                variableStates.put(varName, newState);
-                            }
+    // Other functions only contribute their parameter types and address-taken locals
+    private void loadOtherFunction(LirModule.Function function) {
+        String fnName = function.name;
+        fnParamsGlobalsTypes.putIfAbsent(fnName, new HashSet<>());
+        for (String[] param : function.params) {
+            LirType type = typeTable.parse(param[1]);
+            fnParamsGlobalsTypes.computeIfAbsent(fnName, k -> new HashSet<>()).add(type);
+            VariableState fakeState = new VariableState();
+            fakeState.setType(type);
+            PTRS.add(type);
+            fakeHeapStates.putIfAbsent("fake_" + type, fakeState);
+        }
+        for (String[] local : function.locals) {
+            fnVarsMap.put(local[0], typeTable.parse(local[1]));
+        }
+        for (LirModule.Block block : function.blocks) {
+            for (String line : block.instructions) {
+                if (line.contains("$addrof")) {
+                    String[] parts = line.split(" ");
+                    if (parts.length > 3) {
+                        String addressTakenVar = parts[3];
+                        if (fnVarsMap.containsKey(addressTakenVar)) {
+                            LirType type = fnVarsMap.get(addressTakenVar);
+                            VariableState takenState = new VariableState();
+                            takenState.setType(type);
+                            int takenVar = internVariable(fnName + "." + addressTakenVar, takenState);
+                            allAddressTakenVars.add(takenVar);
+                            addressTakenVariables.computeIfAbsent(type, k -> new HashSet<>()).add(takenVar);
                         }
                     }
-                } else if (line.startsWith("fn ") && !line.contains(functionName)) {
-                    isOtherFunction = true;
-                    String fnName = null;
-                    Pattern pattern = Pattern.compile("fn (\\w+)\\s*\\(");
-                    Matcher matcher = pattern.matcher(line);
-                    if (matcher.find()) {
-                        fnName = matcher.group(1);
-                    }
-                    if(line.contains("->") && line.contains("(")) {
-                        String paramSubstring = line.substring(line.indexOf('(') + 1, line.indexOf(')'));
-                        StringBuilder transformedPart = new StringBuilder();
-                        int parenthesisLevel = 0;
-                        for (char c : paramSubstring.toCharArray()) {
-                            if (c == '(') {
-                                parenthesisLevel++;
-                            }else if (c == ')'){
-                                parenthesisLevel--;
-                            } else if (c == ',' && parenthesisLevel > 0){
-                                c = '|';
-                            }
-                            transformedPart.append(c);
-                        }
+                }
+            }
+        }
+    }
 
-                        fnParamsGlobalsTypes.putIfAbsent(fnName, new HashSet<>());
-                        if(paramSubstring.length()>0) {
-                            String[] variables = paramSubstring.split(",\\s*");
-                            for (String varDeclaration : variables) {
-                                String[] parts = varDeclaration.split(":");
-                                String type = parts[1].replace("|", ",").trim();
-                                fnParamsGlobalsTypes.computeIfAbsent(fnName, k -> new HashSet<>()).add(type);
-                                VariableState fakeState = new VariableState();
-                                fakeState.setType(type);
-                                PTRS.add(type);
-                                fakeHeapStates.putIfAbsent("fake_" + type, fakeState);
-                            }
+    private void loadAnalyzedFunction(LirModule.Function function) {
+        TreeSet<String> labels = new TreeSet<>();
+        for (LirModule.Block block : function.blocks) {
+            labels.add(block.label);
+        }
+        Map<String, Integer> blockRanks = new HashMap<>();
+        for (String label : labels) {
+            blockRanks.put(label, blockRanks.size());
+        }
+        fnParamsGlobalsTypes.putIfAbsent(functionName, new HashSet<>());
+        for (String[] param : function.params) {
+            String varName = param[0];
+            LirType type = typeTable.parse(param[1]);
+            VariableState newState = new VariableState();
+            fnParamsGlobalsTypes.computeIfAbsent(functionName, k -> new HashSet<>()).add(type);
+            newState.setType(type);
+            fakeHeapStates.putIfAbsent("fake_" + type, newState);
+            if (type.isPointer()) {
+                newState.setPointsTo(type.pointee.toString());
+                PTRS.add(type);
+            }
+            localParams.add(internVariable(functionName + "." + varName, newState));
+        }
+        for (String[] local : function.locals) {
+            String varName = local[0];
+            LirType type = typeTable.parse(local[1]);
+            VariableState newState = new VariableState();
+            newState.setType(type);
+            ReachableTypes(type);
+            if (type.isPointer()) {
+                PTRS.add(type);
+                newState.setPointsTo(type.pointee.toString());
+            }
+            localVars.add(internVariable(functionName + "." + varName, newState));
+        }
+        for (LirModule.Block block : function.blocks) {
+            //There is a new block
+            String currentBlock = block.label;
+            int blockRank = blockRanks.get(currentBlock);
+            blockVars.putIfAbsent(currentBlock, new HashSet<>());
+            basicBlocksInstructions.putIfAbsent(currentBlock, new ArrayList<>());
+            int index = 0;
+            for (String line : block.instructions) {
+                if (line.contains("$addrof")) {
+                    ProgramPoint.NonTermInstruction instruction = new ProgramPoint.NonTermInstruction(currentBlock, blockRank, index, line);
+                    index++;
+                    addProgramPoint(instruction);
+                    basicBlocksInstructions.get(currentBlock).add(instruction);
+                    String[] parts = line.split(" ");
+                    Set<Integer> varsInBlock = blockVars.get(currentBlock);
+                    for (int i = 0; i < parts.length; i++) {
+                        int var = resolve(parts[i]);
+                        if (var >= 0) {
+                            varsInBlock.add(var);
                         }
                     }
-                }else if (isOtherFunction && line.startsWith("}")) {
-                    isOtherFunction = false;
-                    currentBlock = null;
-                }else if(isOtherFunction){
-                    if (line.startsWith("let ")) {
-                        String variablesPart = line.substring("let ".length());
-                        StringBuilder transformedPart = new StringBuilder();
-                        int parenthesisLevel = 0;
-                        for (char c : variablesPart.toCharArray()) {
-                            if (c == '(') {
-                                parenthesisLevel++;
-                            } else if (c == ')') {
-                                parenthesisLevel--;
-                            } else if (c == ',' && parenthesisLevel > 0) {
-                                c = '|';
-                            }
-                            transformedPart.append(c);
+                    if (parts.length > 3) {
+                        int address = resolve(parts[0]);
+                        int addressTakenVar = resolve(parts[3]);
+                        VariableState varState = variableStates.get(address);
+                        varState.setPointsTo(parts[3]);
+                        if (addressTakenVar >= 0) {
+                            LirType type = variableStates.get(addressTakenVar).getType();
+                            allAddressTakenVars.add(addressTakenVar);
+                            addressTakenVariables.computeIfAbsent(type, k -> new HashSet<>()).add(addressTakenVar);
                         }
-                        String[] variables = transformedPart.toString().split(",\\s*");
-                        for (String varDeclaration : variables) {
-                            String[] parts = varDeclaration.split(":");
-                            String varName = parts[0].trim();
-                            String type = parts[1].replace("|", ",").trim();
-                            fnVarsMap.put(varName, type);
+                    }
+                } else {
+                    ProgramPoint.Instruction instruction;
+                    Set<Integer> varsInBlock = blockVars.get(currentBlock);
+                    String[] parts = line.split(" ");
+                    for (int i = 0; i < parts.length; i++) {
+                        String part = parts[i];
+                        if(part.contains("(") && part.contains(")")){
+                            part = part.substring(part.indexOf('(') + 1, part.indexOf(')'));
                         }
-                    } else if (line.contains("$addrof")) {
-                        String[] parts = line.split(" ");
-                        if (parts.length > 3) {
-                            String address = parts[0];
-                            String addressTakenVar = parts[3];
-                            VariableState varState = variableStates.get(address);
-                            varState.setPointsTo(addressTakenVar);
-                            if (fnVarsMap.containsKey(addressTakenVar)) {
-                                String type = fnVarsMap.get(addressTakenVar);
-                                allAddressTakenVars.add(addressTakenVar);
-                                addressTakenVariables.computeIfAbsent(type, k -> new HashSet<>()).add(addressTakenVar);
+                        if (!part.contains(",") && resolve(part) >= 0) {
+                            varsInBlock.add(resolve(part));
+                        }else if(part.contains(",")){
+                            String[] subparts = part.split("\\s*,\\s*");
+                            for(String sub : subparts){
+                                if(resolve(sub) >= 0) {
+                                    varsInBlock.add(resolve(sub));
+                                }
                             }
                         }
                     }
-                } else if (isMainFunction && line.startsWith("}")) {
-                    isMainFunction = false;
-                    currentBlock = null;
-                } else if(line.startsWith("struct ")){
-                    isStruct = true;
-                    Pattern pattern = Pattern.compile("struct\\s+(\\w+)\\s*\\{");
-                    Matcher matcher = pattern.matcher(line);
-                    if (matcher.find()) {
-                        structName = matcher.group(1);
-                    }
-                    reachableTypesMap.putIfAbsent(structName, new HashSet<>());
-                } else if(isStruct && line.startsWith("}")) {
-                    isStruct = false;
-                    structName = null;
-                } else if(isStruct){
-                    Pattern fieldPattern = Pattern.compile("\\s*(\\w+):\\s*(.+)");
-                    Matcher fieldMatcher = fieldPattern.matcher(line);
-                    if (fieldMatcher.find()) {
-                        String varType = fieldMatcher.group(2);
-                        reachableTypesMap.computeIfAbsent(structName, k->new HashSet<>()).add(varType);
-                        ReachableTypes(varType);
+                    if(line.contains("$alloc")){
+                        VariableState allocState = resolve(parts[3]) >= 0 ? variableStates.get(resolve(parts[3])) : null;
+                        if(allocState == null) {
+                            VariableState fakeState = new VariableState();
+                            fakeState.setType(LirType.INT);
+                            fakeHeapStates.put("fake_" + fakeState.getType(), fakeState);
+                            reachableTypesMap.computeIfAbsent(fakeState.getType(), k -> new HashSet<>());
+                            ReachableTypes(fakeState.getType());
+                            variableStates.get(resolve(parts[0])).setPointsTo("fake_" + fakeState.getType());
+                        }
                     }
-                }else if (!isMainFunction && !isOtherFunction && !isStruct && line.matches("^\\w+:.*$")) {
-                    Pattern pattern = Pattern.compile("^(\\w+):\\s*(.+)");
-                    Matcher matcher = pattern.matcher(line);
-                    if (matcher.find()) {
-                        String varName = matcher.group(1);
-                        String varType = matcher.group(2);
-                        ReachableTypes(varType);
-                        addressTakenVariables.computeIfAbsent(varType, k -> new HashSet<>()).add(varName);
-                        globalVars.putIfAbsent(varName, varType);
-                        reachableTypesMap.computeIfAbsent(varType, k -> new HashSet<>());
-                        ReachableTypes(varType);
-                        VariableState globalState = new VariableState();
-                        globalState.setType(varType);
-                        variableStates.put(varName, globalState);
-                        if(varType.contains("&")){
-                            PTRS.add(varType);
+                    if(line.contains("store")){
+                        VariableState fakeState = resolve(parts[2]) >= 0 ? variableStates.get(resolve(parts[2])) : null;
+                        if(fakeState == null) {
+                            fakeState = new VariableState();
+                            fakeState.setType(LirType.INT);
+                            fakeHeapStates.put("fake_" + fakeState.getType(), fakeState);
+                            reachableTypesMap.computeIfAbsent(fakeState.getType(), k -> new HashSet<>());
+                            ReachableTypes(fakeState.getType());
+                        }else{
+                            fakeHeapStates.put("fake_" + fakeState.getType(), fakeState);
+                            reachableTypesMap.computeIfAbsent(fakeState.getType(), k -> new HashSet<>());
+                            ReachableTypes(fakeState.getType());
                         }
                     }
-                } else if (isMainFunction) {
-                    if (line.matches("^\\w+:")) {
-                        //There is a new block
-                        currentBlock = line.replace(":", "");
-                        blockVars.putIfAbsent(currentBlock, new HashSet<>());
-                        basicBlocksInstructions.putIfAbsent(currentBlock, new ArrayList<>());
-                        index = 0;
+                    if (line.startsWith("$jump")) {
+                        instruction = new ProgramPoint.Terminal(currentBlock, blockRank, line);
+                        String targetBlock = extractTargetBlock(line);
+                        blockSuccessors.computeIfAbsent(currentBlock, k -> new ArrayList<>()).add(targetBlock);
+                    } else if (line.startsWith("$branch")) {
+                        instruction = new ProgramPoint.Terminal(currentBlock, blockRank, line);
+                        blockSuccessors.computeIfAbsent(currentBlock, k -> new ArrayList<>()).add(parts[2]); // trueBlock
+                        blockSuccessors.computeIfAbsent(currentBlock, k -> new ArrayList<>()).add(parts[3]); // falseBlock
+                    } else if (line.contains("then")) {
+                        instruction = new ProgramPoint.Terminal(currentBlock, blockRank, line);
+                        String targetBlock = line.substring(line.lastIndexOf("then") + 5).trim();
+                        blockSuccessors.computeIfAbsent(currentBlock, k -> new ArrayList<>()).add(targetBlock);
+                    } else if (line.startsWith("$ret")) {
+                        instruction = new ProgramPoint.Terminal(currentBlock, blockRank, line);
                     } else {
-                        if (line.startsWith("let ")) {
-                            String variablesPart = line.substring("let ".length());
-                            StringBuilder transformedPart = new StringBuilder();
-                            int parenthesisLevel = 0;
-                            for (char c : variablesPart.toCharArray()) {
-                                if (c == '(') {
-                                    parenthesisLevel++;
-                                } else if (c == ')') {
-                                    parenthesisLevel--;
-                                } else if (c == ',' && parenthesisLevel > 0) {
-                                    c = '|';
-                                }
-                                transformedPart.append(c);
-                            }
-                            String[] variables = transformedPart.toString().split(",\\s*");
-                            for (String varDeclaration : variables) {
-                                String[] parts = varDeclaration.split(":");
-                                String varName = parts[0].trim();
-                                // just get int type
-                                String type = parts[1].replace("|", ",").trim();
-                                VariableState newState = new VariableState();
-                                newState.setType(type);
-                                ReachableTypes(type);
-                                if (type.startsWith("&")) {
-                                    PTRS.add(type);
-                                    newState.setPointsTo(type.substring(1));
-                                }
-                                variableStates.put(varName, newState);
-                            }
-                        } else if (line.contains("$addrof")) {
-                            ProgramPoint.NonTermInstruction instruction = new ProgramPoint.NonTermInstruction(currentBlock, index, line);
-                            index++;
-                            basicBlocksInstructions.get(currentBlock).add(instruction);
-                            reachingDefinitions.put(instruction.toString(), new TreeSet<>());
-                            String[] parts = line.split(" ");
-                            Set<String> varsInBlock = blockVars.get(currentBlock);
-                            for (int i = 0; i < parts.length; i++) {
-                                String part = parts[i];
-                                if (variableStates.containsKey(part)) {
-                                    varsInBlock.add(part);
-                                }
-                            }
-                            if (parts.length > 3) {
-                                String address = parts[0];
-                                String addressTakenVar = parts[3];
-                                VariableState varState = variableStates.get(address);
-                                varState.setPointsTo(addressTakenVar);
-                                if (variableStates.containsKey(addressTakenVar)) {
-                                    String type = variableStates.get(addressTakenVar).getType();
-                                    allAddressTakenVars.add(addressTakenVar);
-                                    addressTakenVariables.computeIfAbsent(type, k -> new HashSet<>()).add(addressTakenVar);
-                                }
-                            }
-                        } else {
-                            ProgramPoint.Instruction instruction;
-                            Set<String> varsInBlock = blockVars.get(currentBlock);
-                            String[] parts = line.split(" ");
-                            for (int i = 0; i < parts.length; i++) {
-                                String part = parts[i];
-                                if(part.contains("(") && part.contains(")")){
-                                    part = part.substring(part.indexOf('(') + 1, part.indexOf(')'));
-                                }
-                                if (!part.contains(",") && variableStates.containsKey(part)) {
-                                    varsInBlock.add(part);
-                                }else if(part.contains(",")){
-                                    String[] subparts = part.split("\\s*,\\s*");
-                                    for(String sub : subparts){
-                                        if(variableStates.containsKey(sub)) {
-                                            varsInBlock.add(sub);
-                                        }
-                                    }
-                                }
-                            }
-                            if(line.contains("$alloc")){
-                                VariableState allocState = variableStates.get(parts[3]);
-                                if(allocState == null) {
-                                    VariableState fakeState = new VariableState();
-                                    fakeState.setType("int");
-                                    fakeHeapStates.put("fake_" + fakeState.getType(), fakeState);
-                                    reachableTypesMap.computeIfAbsent(fakeState.getType(), k -> new HashSet<>());
-                                    ReachableTypes(fakeState.getType());
-                                    variableStates.get(parts[0]).setPointsTo("fake_" + fakeState.getType());
-                                }
-                            }
-                            if(line.contains("store")){
-                                VariableState fakeState = variableStates.get(parts[2]);
-                                if(fakeState == null) {
-                                    fakeState = new VariableState();
-                                    fakeState.setType("int");
-                                    fakeHeapStates.put("fake_" + fakeState.getType(), fakeState);
-                                    reachableTypesMap.computeIfAbsent(fakeState.getType(), k -> new HashSet<>());
-                                    ReachableTypes(fakeState.getType());
-                                }else{
-                                    fakeHeapStates.put("fake_" + fakeState.getType(), fakeState);
-                                    reachableTypesMap.computeIfAbsent(fakeState.getType(), k -> new HashSet<>());
-                                    ReachableTypes(fakeState.getType());
-                                }
-                            }
-                            if (currentBlock != null) {
-                                if (line.startsWith("$jump")) {
-                                    instruction = new ProgramPoint.Terminal(currentBlock, line);
-                                    String targetBlock = extractTargetBlock(line);
-                                    blockSuccessors.computeIfAbsent(currentBlock, k -> new ArrayList<>()).add(targetBlock);
-                                } else if (line.startsWith("$branch")) {
-                                    instruction = new ProgramPoint.Terminal(currentBlock, line);
-                                    blockSuccessors.computeIfAbsent(currentBlock, k -> new ArrayList<>()).add(parts[2]); // trueBlock
-                                    blockSuccessors.computeIfAbsent(currentBlock, k -> new ArrayList<>()).add(parts[3]); // falseBlock
-                                } else if (line.contains("then")) {
-                                    instruction = new ProgramPoint.Terminal(currentBlock, line);
-                                    String targetBlock = line.substring(line.lastIndexOf("then") + 5).trim();
-                                    blockSuccessors.computeIfAbsent(currentBlock, k -> new ArrayList<>()).add(targetBlock);
-                                } else if (line.startsWith("$ret")) {
-                                    instruction = new ProgramPoint.Terminal(currentBlock, line);
-                                } else {
-                                    instruction = new ProgramPoint.NonTermInstruction(currentBlock, index, line);
-                                    index++;
-                                }
-                                basicBlocksInstructions.get(currentBlock).add(instruction);
-                                reachingDefinitions.put(instruction.toString(), new TreeSet<>());
-                            } else {
-
-                            }
-                        }
+                        instruction = new ProgramPoint.NonTermInstruction(currentBlock, blockRank, index, line);
+                        index++;
                     }
+                    addProgramPoint(instruction);
+                    basicBlocksInstructions.get(currentBlock).add(instruction);
                 }
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+        }
+    }
+
+    private void addProgramPoint(ProgramPoint.Instruction instruction) {
+        programPoints.add(instruction);
+    }
+
+    // Numbers the points in output order once the function is loaded, parse order
+    // among points with the same key
+    private void numberProgramPoints() {
+        programPoints.sort(null);
+        reachingDefinitions = new DefinitionSet[programPoints.size()];
+        for (int id = 0; id < programPoints.size(); id++) {
+            ProgramPoint.Instruction instruction = programPoints.get(id);
+            instruction.setId(id);
+            boolean sameName = id > 0 && programPoints.get(id - 1).getKey() == instruction.getKey();
+            reachingDefinitions[id] = sameName ? reachingDefinitions[id - 1] : new DefinitionSet();
         }
     }
 
@@ -965,40 +1133,126 @@ public class DataFlowRdef {
         return "";
     }
 
-    private static void printAnalysisResults() {
-        // Sort the basic block names alphabetically
-        for (Map.Entry<String, TreeSet<ProgramPoint.Instruction>> entry : reachingDefinitions.entrySet()) {
-            String instruction = entry.getKey();
-            TreeSet<ProgramPoint.Instruction> definitions = entry.getValue();
+    void printAnalysisResults() {
+        ResultWriter writer = new ResultWriter(out);
+        // Ids are in output order: sorted by block name, then index, term last
+        for (int id = 0; id < programPoints.size(); id++) {
+            ProgramPoint.Instruction instruction = programPoints.get(id);
+            DefinitionSet points = reachingDefinitions[id];
 
-            // Skip this entry if definitions set is empty
-            if (definitions.isEmpty()) {
+            // Skip this entry if definitions set is empty, or if it was printed under the same name
+            if (points.isEmpty() || id > 0 && reachingDefinitions[id - 1] == points) {
                 continue;
             }
 
-            StringBuilder result = new StringBuilder(instruction.toString() + " -> {");
-
-            List<String> defsStrings = definitions.stream()
-                    .map(Object::toString)
-                    .collect(Collectors.toList());
-
-            result.append(String.join(", ", defsStrings));
-            result.append("}");
-
-            System.out.println(result.toString());
+            writer.append(instruction.getName()).append(" -> {");
+            long lastKey = -1;
+            for (int i = points.next(0); i >= 0; i = points.next(i + 1)) {
+                ProgramPoint.Instruction definition = programPoints.get(i);
+                if (definition.getKey() == lastKey) {
+                    continue;
+                }
+                if (lastKey >= 0) {
+                    writer.append(", ");
+                }
+                writer.append(definition.getName());
+                lastKey = definition.getKey();
+            }
+            writer.append('}').newLine();
         }
+        writer.flush();
+        out.flush();
     }
 
     public static void main(String[] args) {
         if (args.length < 2) {
-            System.out.println("Usage: java DataFlowConstants <lir_file_path> <json_file_path> <function_name>");
+            System.out.println("Usage: java DataFlowConstants <lir_file_path> <json_file_path> <function_name>|--all|<fn1,fn2,...>");
             System.exit(1);
         }
-        String lirFilePath = args[0];
+        run(args, System.out, System.err);
+    }
+
+    // Same arguments as main, with the results written to the given streams
+    static void run(String[] args, PrintStream out, PrintStream err) {
         String functionName = "test";
         if(args.length > 2 && args[2].length()!=0){
             functionName = args[2];
         }
-        reachingDefinitionAnalysis(lirFilePath, functionName);
+        WorklistScheduler.Order iterationOrder = WorklistScheduler.Order.WEAK_TOPOLOGICAL;
+        Engine engine = Engine.DENSE;
+        boolean printVisits = false;
+        boolean incremental = false;
+        String metricsFile = null;
+        String outputFile = null;
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].startsWith("--order=")) {
+                iterationOrder = WorklistScheduler.Order.parse(args[i].substring("--order=".length()));
+            } else if (args[i].startsWith("--engine=")) {
+                engine = Engine.parse(args[i].substring("--engine=".length()));
+            } else if (args[i].equals("--visits")) {
+                printVisits = true;
+            } else if (args[i].equals("--incremental")) {
+                incremental = true;
+            } else if (args[i].startsWith("--metrics=")) {
+                metricsFile = args[i].substring("--metrics=".length());
+            } else if (args[i].startsWith("--output=")) {
+                outputFile = args[i].substring("--output=".length());
+            }
+        }
+        int jobs = ModuleDriver.parseJobs(args, err);
+        if (jobs == 0) {
+            return;
+        }
+        LirModule module;
+        long parseStart = System.nanoTime();
+        try {
+            module = LirModule.load(args, err);
+            if (outputFile != null) {
+                out = ResultWriter.open(outputFile);
+            }
+        } catch (IOException e) {
+            e.printStackTrace(err);
+            return;
+        }
+        long parseNanos = System.nanoTime() - parseStart;
+        WorklistScheduler.Order order = iterationOrder;
+        Engine selected = engine;
+        boolean visits = printVisits;
+        boolean reuse = incremental;
+        String file = Paths.get(args[0]).toAbsolutePath().toString();
+        boolean batch = functionName.equals("--all") || functionName.contains(",");
+        List<String> names = module.selectFunctions(functionName);
+        Map<String, AnalysisMetrics> metrics = metricsFile == null ? null : new ConcurrentHashMap<>();
+        ModuleDriver.analyze(names, batch, jobs, out, err, (name, functionOut, functionErr) -> {
+            DataFlowRdef analyzer = new DataFlowRdef(module, name);
+            if (metrics != null) {
+                analyzer.metrics = new AnalysisMetrics(name);
+                metrics.put(name, analyzer.metrics);
+            }
+            analyzer.iterationOrder = order;
+            analyzer.engine = selected;
+            analyzer.printVisits = visits;
+            analyzer.out = functionOut;
+            analyzer.err = functionErr;
+            if (reuse) {
+                synchronized (previousResults) {
+                    analyzer.previous = previousResults.get(file + "#" + name);
+                }
+            }
+            analyzer.reachingDefinitionAnalysis();
+            if (reuse) {
+                analyzer.previous = null;
+                Snapshot snapshot = new Snapshot(analyzer);
+                synchronized (previousResults) {
+                    previousResults.put(file + "#" + name, snapshot);
+                }
+            }
+        });
+        if (outputFile != null) {
+            out.close();
+        }
+        if (metrics != null) {
+            ModuleDriver.writeMetrics(metricsFile, "rdef", args[0], parseNanos, names, metrics, err);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,155 @@
+import java.util.Arrays;
+
+// Lattice element of 𝒫(PP) for reaching definitions.
+// Program points are numbered densely when parsed, so a set of them is a bitset:
+// ⊥ = {} and ⊔ = set union, which is a word-wise OR. The words are kept here rather
+// than in a java.util.BitSet so that ⊔ can tell whether it grew while OR-ing.
+class DefinitionSet implements State {
+
+    private static final long[] EMPTY = new long[0];
+
+    // Bit i of words[i >>> 6] is point i; trailing words may be zero
+    private long[] words;
+
+    public DefinitionSet() {
+        this.words = EMPTY;
+    }
+
+    private DefinitionSet(long[] words) {
+        this.words = words;
+    }
+
+    private void ensureWords(int count) {
+        if (words.length < count) {
+            words = Arrays.copyOf(words, Math.max(count, 2 * words.length));
+        }
+    }
+
+    public void add(int point) {
+        ensureWords((point >>> 6) + 1);
+        words[point >>> 6] |= 1L << point;
+    }
+
+    public void remove(int point) {
+        int w = point >>> 6;
+        if (w < words.length) {
+            words[w] &= ~(1L << point);
+        }
+    }
+
+    // σ[x] ← {pp}
+    public void set(int point) {
+        Arrays.fill(words, 0L);
+        add(point);
+    }
+
+    public boolean contains(int point) {
+        int w = point >>> 6;
+        return w < words.length && (words[w] & (1L << point)) != 0;
+    }
+
+    public boolean containsAll(DefinitionSet other) {
+        for (int w = 0; w < other.words.length; w++) {
+            long mine = w < words.length ? words[w] : 0L;
+            if ((other.words[w] & ~mine) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        int size = 0;
+        for (long word : words) {
+            size += Long.bitCount(word);
+        }
+        return size;
+    }
+
+    // Returns -1 when there is no further point, like BitSet.nextSetBit.
+    public int next(int from) {
+        int w = from >>> 6;
+        if (w >= words.length) {
+            return -1;
+        }
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+
+    @Override
+    public boolean join(State other) {
+        long[] otherWords = ((DefinitionSet) other).words;
+        int count = otherWords.length;
+        while (count > 0 && otherWords[count - 1] == 0) {
+            count--;
+        }
+        ensureWords(count);
+        boolean changed = false;
+        for (int w = 0; w < count; w++) {
+            long merged = words[w] | otherWords[w];
+            if (merged != words[w]) {
+                words[w] = merged;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public DefinitionSet copy() {
+        return new DefinitionSet(words.clone());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof DefinitionSet)) return false;
+        long[] otherWords = ((DefinitionSet) obj).words;
+        for (int w = 0; w < Math.max(words.length, otherWords.length); w++) {
+            long mine = w < words.length ? words[w] : 0L;
+            long theirs = w < otherWords.length ? otherWords[w] : 0L;
+            if (mine != theirs) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The same value BitSet.hashCode gives for these points
+    @Override
+    public int hashCode() {
+        long h = 1234;
+        for (int w = words.length; --w >= 0; ) {
+            h ^= words[w] * (w + 1);
+        }
+        return (int) ((h >> 32) ^ h);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("{");
+        for (int point = next(0); point >= 0; point = next(point + 1)) {
+            if (text.length() > 1) {
+                text.append(", ");
+            }
+            text.append(point);
+        }
+        return text.append('}').toString();
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.*;
+
+// Immediate dominators by Cooper, Harvey and Kennedy, "A Simple, Fast Dominance
+// Algorithm" (2001): blocks are numbered in reverse postorder and each block's idom
+// is the intersection of its processed predecessors' idoms, walking up the tree.
+// Dominator sets are never stored, getDominators derives them from the tree.
+class DominatorTree {
+
+    private final List<String> blocks;
+    private final Map<String, Integer> numbers = new HashMap<>();
+    private final int[] idom;
+    private final TreeSet<String> allBlocks;
+    private int rounds = 0;
+
+    public DominatorTree(String entry, Collection<String> allBlocks, Map<String, List<String>> successors) {
+        this.blocks = WorklistScheduler.reversePostorder(entry, successors);
+        this.allBlocks = new TreeSet<>(allBlocks);
+        for (int i = 0; i < blocks.size(); i++) {
+            numbers.put(blocks.get(i), i);
+        }
+
+        // Predecessors that are reachable from entry, by number
+        List<List<Integer>> predecessors = new ArrayList<>();
+        for (int i = 0; i < blocks.size(); i++) {
+            predecessors.add(new ArrayList<>());
+        }
+        for (int i = 0; i < blocks.size(); i++) {
+            for (String successor : successors.getOrDefault(blocks.get(i), Collections.emptyList())) {
+                predecessors.get(numbers.get(successor)).add(i);
+            }
+        }
+
+        idom = new int[blocks.size()];
+        Arrays.fill(idom, -1);
+        idom[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            rounds++;
+            for (int b = 1; b < blocks.size(); b++) {
+                int newIdom = -1;
+                for (int pred : predecessors.get(b)) {
+                    if (idom[pred] < 0) {
+                        continue;
+                    }
+                    newIdom = newIdom < 0 ? pred : intersect(pred, newIdom);
+                }
+                if (idom[b] != newIdom) {
+                    idom[b] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private int intersect(int finger1, int finger2) {
+        while (finger1 != finger2) {
+            while (finger1 > finger2) {
+                finger1 = idom[finger1];
+            }
+            while (finger2 > finger1) {
+                finger2 = idom[finger2];
+            }
+        }
+        return finger1;
+    }
+
+    public boolean isReachable(String block) {
+        return numbers.containsKey(block);
+    }
+
+    // null for entry and for blocks that entry cannot reach
+    public String getImmediateDominator(String block) {
+        Integer number = numbers.get(block);
+        if (number == null || number == 0) {
+            return null;
+        }
+        return blocks.get(idom[number]);
+    }
+
+    // Blocks entry cannot reach keep the initial ⊥ = every block, as in the iterative analysis
+    public TreeSet<String> getDominators(String block) {
+        Integer number = numbers.get(block);
+        if (number == null) {
+            return new TreeSet<>(allBlocks);
+        }
+        TreeSet<String> dominators = new TreeSet<>();
+        int b = number;
+        dominators.add(blocks.get(b));
+        while (b != 0) {
+            b = idom[b];
+            dominators.add(blocks.get(b));
+        }
+        return dominators;
+    }
+
+    public boolean dominates(String dominator, String block) {
+        Integer target = numbers.get(dominator);
+        Integer b = numbers.get(block);
+        if (b == null) {
+            return true;
+        }
+        if (target == null) {
+            return false;
+        }
+        while (b > target) {
+            b = idom[b];
+        }
+        return b.equals(target);
+    }
+
+    // Reachable blocks in reverse postorder, entry first
+    public List<String> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+}
@@ -0,0 +1,33 @@
+import java.io.IOException;
+
+// Times the two front ends on the same program.
+// Usage: java FrontEndBenchmark <lir_file_path> <json_file_path> [iterations]
+public class FrontEndBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java FrontEndBenchmark <lir_file_path> <json_file_path> [iterations]");
+            System.exit(1);
+        }
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        // Warm up both paths before measuring either
+        time(args[0], false, iterations);
+        time(args[1], true, iterations);
+        System.out.printf("text: %.1f us/parse%n", time(args[0], false, iterations));
+        System.out.printf("json: %.1f us/parse%n", time(args[1], true, iterations));
+    }
+
+    private static double time(String filePath, boolean json, int iterations) throws IOException {
+        int declarations = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            LirModule module = json ? LirJsonLoader.parse(filePath) : LirModule.parse(filePath);
+            declarations += module.declarations.size();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (declarations < 0) {
+            System.out.println(declarations);
+        }
+        return elapsed / 1000.0 / iterations;
+    }
+}
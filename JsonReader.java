@@ -0,0 +1,284 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+// Pull tokenizer for JSON: the caller asks for the next token it expects and the
+// reader consumes just that much input, so nothing but the current token is kept.
+class JsonReader implements AutoCloseable {
+
+    enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private final Reader in;
+    private final char[] buffer = new char[1 << 14];
+    private int position = 0;
+    private int limit = 0;
+
+    // Token read by peek() and not consumed yet
+    private Token peeked = null;
+    private final StringBuilder text = new StringBuilder();
+    // One entry per open container: whether it is an object, whether a member
+    // name comes next, and whether no member has been read yet
+    private boolean[] objects = new boolean[32];
+    private boolean[] expectName = new boolean[32];
+    private boolean[] first = new boolean[32];
+    private int depth = 0;
+
+    JsonReader(Reader in) {
+        this.in = in;
+    }
+
+    public Token peek() throws IOException {
+        if (peeked == null) {
+            peeked = readToken();
+        }
+        return peeked;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+    }
+
+    // True while the current object or array has more members
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return text.toString();
+    }
+
+    public String nextString() throws IOException {
+        expect(Token.STRING);
+        return text.toString();
+    }
+
+    // Numbers are handed out as written, LIR only needs them as text
+    public String nextNumber() throws IOException {
+        expect(Token.NUMBER);
+        return text.toString();
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+    }
+
+    public void skipValue() throws IOException {
+        int open = 0;
+        do {
+            Token token = peek();
+            peeked = null;
+            if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+                open++;
+            } else if (token == Token.END_OBJECT || token == Token.END_ARRAY) {
+                open--;
+            } else if (token == Token.END_DOCUMENT) {
+                throw syntaxError("unexpected end of input");
+            }
+        } while (open > 0);
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("expected " + expected + " but found " + token);
+        }
+        peeked = null;
+    }
+
+    private Token readToken() throws IOException {
+        int c = nextNonWhitespace();
+        if (depth > 0) {
+            int top = depth - 1;
+            if (c == '}' || c == ']') {
+                if ((c == '}') != objects[top]) {
+                    throw syntaxError("mismatched '" + (char) c + "'");
+                }
+                depth--;
+                afterValue();
+                return c == '}' ? Token.END_OBJECT : Token.END_ARRAY;
+            }
+            if (!first[top] && (!objects[top] || expectName[top])) {
+                if (c != ',') {
+                    throw syntaxError("expected ','");
+                }
+                c = nextNonWhitespace();
+            }
+            first[top] = false;
+            if (objects[top] && expectName[top]) {
+                if (c != '"') {
+                    throw syntaxError("expected a name");
+                }
+                readString();
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("expected ':'");
+                }
+                expectName[top] = false;
+                return Token.NAME;
+            }
+        } else if (c == -1) {
+            return Token.END_DOCUMENT;
+        }
+        switch (c) {
+            case '{':
+            case '[':
+                push(c == '{');
+                return c == '{' ? Token.BEGIN_OBJECT : Token.BEGIN_ARRAY;
+            case '"':
+                readString();
+                afterValue();
+                return Token.STRING;
+            case 't':
+                readLiteral("true");
+                afterValue();
+                return Token.BOOLEAN;
+            case 'f':
+                readLiteral("false");
+                afterValue();
+                return Token.BOOLEAN;
+            case 'n':
+                readLiteral("null");
+                afterValue();
+                return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    readNumber(c);
+                    afterValue();
+                    return Token.NUMBER;
+                }
+                throw syntaxError(c == -1 ? "unexpected end of input" : "unexpected '" + (char) c + "'");
+        }
+    }
+
+    private void push(boolean object) {
+        if (depth == objects.length) {
+            objects = Arrays.copyOf(objects, depth * 2);
+            expectName = Arrays.copyOf(expectName, depth * 2);
+            first = Arrays.copyOf(first, depth * 2);
+        }
+        objects[depth] = object;
+        expectName[depth] = object;
+        first[depth] = true;
+        depth++;
+    }
+
+    // In an object, a value is followed by the next name
+    private void afterValue() {
+        if (depth > 0 && objects[depth - 1]) {
+            expectName[depth - 1] = true;
+        }
+    }
+
+    private void readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw syntaxError("unterminated string");
+            }
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'n': text.append('\n'); break;
+                    case 't': text.append('\t'); break;
+                    case 'r': text.append('\r'); break;
+                    case 'b': text.append('\b'); break;
+                    case 'f': text.append('\f'); break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            code = code * 16 + Character.digit(read(), 16);
+                        }
+                        text.append((char) code);
+                        break;
+                    default:
+                        text.append((char) c);
+                }
+            } else {
+                text.append((char) c);
+            }
+        }
+    }
+
+    private void readNumber(int c) throws IOException {
+        text.setLength(0);
+        text.append((char) c);
+        while (true) {
+            int next = peekChar();
+            if ((next >= '0' && next <= '9') || next == '.' || next == 'e' || next == 'E' || next == '+' || next == '-') {
+                text.append((char) read());
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        for (int i = 1; i < literal.length(); i++) {
+            if (read() != literal.charAt(i)) {
+                throw syntaxError("expected " + literal);
+            }
+        }
+        text.setLength(0);
+        text.append(literal);
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peekChar() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("Malformed JSON: " + message);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
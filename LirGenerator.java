@@ -0,0 +1,393 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Generates large, valid LIR programs for scale testing. The same seed and options
+// always give the same program, so benchmark runs and scaling curves can be repeated.
+//
+// Every function has the signature (int, &int) -> int so that any of them can be the
+// target of $call_dir or of a function pointer. Control flow is built from nested
+// regions (straight-line runs, if/else diamonds, natural loops up to --loop-depth,
+// and two-entry cycles for --irreducible), so every block is reachable from entry.
+//
+// Usage: java LirGenerator [--seed=n] [--functions=n] [--blocks=n] [--block-size=n]
+//        [--loop-depth=n] [--irreducible=n] [--pointers=p] [--structs=n] [--struct-density=p]
+//        [--globals=n] [--call-ext=p] [--call-dir=p] [--call-idr=p] [--out=file]
+// p values are probabilities in [0, 1]; block-level for calls, instruction-level otherwise.
+public class LirGenerator {
+
+    static final String SIGNATURE = "(int, &int) -> int";
+
+    long seed = 1;
+    int functions = 1;
+    // Blocks per function
+    int blocks = 100;
+    // Largest number of instructions in a block, terminator not included
+    int blockSize = 6;
+    int loopDepth = 2;
+    // Irreducible regions per function
+    int irreducible = 0;
+    double pointers = 0.3;
+    int structs = 2;
+    double structDensity = 0.2;
+    int globals = 4;
+    double callExt = 0.05;
+    double callDir = 0.05;
+    double callIdr = 0.02;
+
+    private Random random;
+    private StringBuilder lir;
+
+    // Per function
+    private List<String> ints;
+    private List<String> intPointers;
+    private List<String> intPointerPointers;
+    private List<String> structPointers;
+    private List<String> functionPointers;
+    private List<String> globalInts;
+    private List<String> globalIntPointers;
+    private StringBuilder body;
+    private int labels;
+    private int allocs;
+    private int irreducibleLeft;
+
+    public String generate() {
+        random = new Random(seed);
+        lir = new StringBuilder();
+
+        // s_k { f0:int, f1:&int, f2:&s_j }, so struct graphs can be deep and cyclic
+        for (int k = 0; k < structs; k++) {
+            lir.append("struct s").append(k).append(" {\n  f0:int\n  f1:&int\n");
+            lir.append("  f2:&s").append(random.nextInt(structs)).append("\n}\n\n");
+        }
+        globalInts = new ArrayList<>();
+        globalIntPointers = new ArrayList<>();
+        for (int g = 0; g < globals; g++) {
+            String name = "g" + g;
+            if (g % 3 == 2 && structs > 0) {
+                lir.append(name).append(":&s").append(random.nextInt(structs)).append('\n');
+            } else if (g % 3 == 1) {
+                lir.append(name).append(":&int\n");
+                globalIntPointers.add(name);
+            } else {
+                lir.append(name).append(":int\n");
+                globalInts.add(name);
+            }
+        }
+        for (int f = 0; f < functions; f++) {
+            lir.append(functionName(f)).append(":&").append(SIGNATURE).append('\n');
+        }
+        lir.append("\nextern e0:(int) -> int\nextern e1:(&int) -> int\n\n");
+
+        for (int f = 0; f < functions; f++) {
+            function(f);
+        }
+        return lir.toString();
+    }
+
+    static String functionName(int index) {
+        return index == 0 ? "test" : "f" + index;
+    }
+
+    private void function(int index) {
+        int variables = Math.max(4, blocks / 4);
+        ints = names("i", variables);
+        intPointers = names("a", Math.max(2, (int) (variables * pointers)));
+        intPointerPointers = names("b", Math.max(1, (int) (variables * pointers / 3)));
+        structPointers = structs > 0 ? names("s", Math.max(1, (int) (variables * structDensity))) : new ArrayList<>();
+        functionPointers = callIdr > 0 ? names("fp", 2) : new ArrayList<>();
+        body = new StringBuilder();
+        labels = 0;
+        allocs = 0;
+        irreducibleLeft = irreducible;
+
+        List<String> locals = new ArrayList<>();
+        for (String name : ints) {
+            locals.add(name + ":int");
+        }
+        for (String name : intPointers) {
+            locals.add(name + ":&int");
+        }
+        for (String name : intPointerPointers) {
+            locals.add(name + ":&&int");
+        }
+        for (int s = 0; s < structPointers.size(); s++) {
+            locals.add(structPointers.get(s) + ":&s" + (s % structs));
+        }
+        for (String name : functionPointers) {
+            locals.add(name + ":&" + SIGNATURE);
+        }
+
+        lir.append("fn ").append(functionName(index)).append("(p:int, q:&int) -> int {\n");
+        lir.append("let ").append(String.join(", ", locals)).append('\n');
+
+        // entry sets up the function pointers, then the body region runs to exit
+        String first = label();
+        body.append("entry:\n");
+        for (String pointer : functionPointers) {
+            body.append("  ").append(pointer).append(" = $copy ").append(functionName(random.nextInt(functions))).append('\n');
+        }
+        body.append("  ").append(pick(ints)).append(" = $copy p\n");
+        body.append("  ").append(pick(intPointers)).append(" = $copy q\n");
+        body.append("  $jump ").append(first).append("\n\n");
+        region(first, "exit", Math.max(1, blocks - 2), loopDepth);
+        body.append("exit:\n  $ret ").append(pick(ints)).append("\n}\n\n");
+        lir.append(body);
+    }
+
+    // Blocks from `entry` that all eventually continue at `exit`, about `budget` of them
+    private void region(String entry, String exit, int budget, int depth) {
+        if (budget <= 1) {
+            block(entry);
+            jump(exit);
+            return;
+        }
+        int shape = random.nextInt(4);
+        if (irreducibleLeft > 0 && budget >= 3 && random.nextInt(4) == 0) {
+            // entry -> a, entry -> b, a -> b, b -> a: a cycle with two entries
+            irreducibleLeft--;
+            String a = label();
+            String b = label();
+            block(entry);
+            branch(a, b);
+            region(a, b, budget - 2, depth);
+            block(b);
+            branch(a, exit);
+        } else if (shape == 0 && depth > 0) {
+            // Natural loop: the header exits, the body jumps back to it
+            String loopBody = label();
+            block(entry);
+            branch(loopBody, exit);
+            region(loopBody, entry, budget - 1, depth - 1);
+        } else if (shape == 1 && budget >= 3) {
+            String then = label();
+            String otherwise = label();
+            int thenBudget = 1 + random.nextInt(budget - 2);
+            block(entry);
+            branch(then, otherwise);
+            region(then, exit, thenBudget, depth);
+            region(otherwise, exit, budget - 1 - thenBudget, depth);
+        } else {
+            String middle = label();
+            int firstBudget = 1 + random.nextInt(budget - 1);
+            region(entry, middle, firstBudget, depth);
+            region(middle, exit, budget - firstBudget, depth);
+        }
+    }
+
+    private void block(String label) {
+        body.append(label).append(":\n");
+        int size = 1 + random.nextInt(blockSize);
+        for (int i = 0; i < size; i++) {
+            if (random.nextDouble() < pointers) {
+                pointerInstruction();
+            } else {
+                scalarInstruction();
+            }
+        }
+        if (random.nextDouble() < callExt) {
+            if (random.nextBoolean()) {
+                instruction(pick(ints) + " = $call_ext e0(" + pick(ints) + ")");
+            } else {
+                instruction("$call_ext e1(" + pick(intPointers) + ")");
+            }
+        }
+    }
+
+    private void scalarInstruction() {
+        switch (random.nextInt(3)) {
+            case 0:
+                instruction(pick(ints) + " = $arith " + pick("add", "sub", "mul") + " " + intOperand() + " " + intOperand());
+                break;
+            case 1:
+                instruction(pick(ints) + " = $cmp " + pick("lt", "eq", "neq") + " " + intOperand() + " " + intOperand());
+                break;
+            default:
+                instruction(pick(ints) + " = $copy " + intOperand());
+        }
+    }
+
+    private void pointerInstruction() {
+        if (!structPointers.isEmpty() && random.nextDouble() < structDensity) {
+            String struct = pick(structPointers);
+            switch (random.nextInt(3)) {
+                case 0:
+                    instruction(struct + " = $alloc 1 [_alloc" + (++allocs) + "]");
+                    break;
+                case 1:
+                    instruction(pick(intPointers) + " = $gfp " + struct + " f0");
+                    break;
+                default:
+                    instruction(pick(intPointerPointers) + " = $gfp " + struct + " f1");
+            }
+            return;
+        }
+        switch (random.nextInt(8)) {
+            case 0:
+                instruction(pick(intPointers) + " = $addrof " + pick(ints));
+                break;
+            case 1:
+                instruction(pick(intPointers) + " = $alloc 1 [_alloc" + (++allocs) + "]");
+                break;
+            case 2:
+                instruction(pick(ints) + " = $load " + pick(intPointers));
+                break;
+            case 3:
+                instruction("$store " + pick(intPointers) + " " + intOperand());
+                break;
+            case 4:
+                instruction(pick(intPointers) + " = $gep " + pick(intPointers) + " " + intOperand());
+                break;
+            case 5:
+                instruction(pick(intPointerPointers) + " = $addrof " + pick(intPointers));
+                break;
+            case 6:
+                instruction(pick(intPointers) + " = $load " + pick(intPointerPointers));
+                break;
+            default:
+                instruction("$store " + pick(intPointerPointers) + " " + intPointerOperand());
+        }
+    }
+
+    private void jump(String target) {
+        double call = random.nextDouble();
+        String args = "(" + intOperand() + ", " + intPointerOperand() + ")";
+        if (call < callDir) {
+            instruction(pick(ints) + " = $call_dir " + functionName(random.nextInt(functions)) + args + " then " + target);
+        } else if (call < callDir + callIdr && !functionPointers.isEmpty()) {
+            instruction(pick(ints) + " = $call_idr " + pick(functionPointers) + args + " then " + target);
+        } else {
+            instruction("$jump " + target);
+        }
+        body.append('\n');
+    }
+
+    private void branch(String then, String otherwise) {
+        String condition = pick(ints);
+        instruction(condition + " = $cmp lt " + pick(ints) + " " + random.nextInt(100));
+        instruction("$branch " + condition + " " + then + " " + otherwise);
+        body.append('\n');
+    }
+
+    private void instruction(String text) {
+        body.append("  ").append(text).append('\n');
+    }
+
+    private String intOperand() {
+        int choice = random.nextInt(8);
+        if (choice == 0) {
+            return String.valueOf(random.nextInt(10));
+        } else if (choice == 1 && !globalInts.isEmpty()) {
+            return pick(globalInts);
+        } else if (choice == 2) {
+            return "p";
+        }
+        return pick(ints);
+    }
+
+    private String intPointerOperand() {
+        int choice = random.nextInt(6);
+        if (choice == 0 && !globalIntPointers.isEmpty()) {
+            return pick(globalIntPointers);
+        } else if (choice == 1) {
+            return "q";
+        }
+        return pick(intPointers);
+    }
+
+    private String label() {
+        return "bb" + (++labels);
+    }
+
+    private String pick(List<String> names) {
+        return names.get(random.nextInt(names.size()));
+    }
+
+    private String pick(String... choices) {
+        return choices[random.nextInt(choices.length)];
+    }
+
+    private static List<String> names(String prefix, int count) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            names.add(prefix + i);
+        }
+        return names;
+    }
+
+    // Applies a --name=value option, false if it is not a generator option
+    public boolean option(String arg) {
+        if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+            return false;
+        }
+        String name = arg.substring(2, arg.indexOf('='));
+        String value = arg.substring(arg.indexOf('=') + 1);
+        switch (name) {
+            case "seed":
+                seed = Long.parseLong(value);
+                break;
+            case "functions":
+                functions = Integer.parseInt(value);
+                break;
+            case "blocks":
+                blocks = Integer.parseInt(value);
+                break;
+            case "block-size":
+                blockSize = Integer.parseInt(value);
+                break;
+            case "loop-depth":
+                loopDepth = Integer.parseInt(value);
+                break;
+            case "irreducible":
+                irreducible = Integer.parseInt(value);
+                break;
+            case "pointers":
+                pointers = Double.parseDouble(value);
+                break;
+            case "structs":
+                structs = Integer.parseInt(value);
+                break;
+            case "struct-density":
+                structDensity = Double.parseDouble(value);
+                break;
+            case "globals":
+                globals = Integer.parseInt(value);
+                break;
+            case "call-ext":
+                callExt = Double.parseDouble(value);
+                break;
+            case "call-dir":
+                callDir = Double.parseDouble(value);
+                break;
+            case "call-idr":
+                callIdr = Double.parseDouble(value);
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    public static void main(String[] args) throws IOException {
+        LirGenerator generator = new LirGenerator();
+        String out = null;
+        for (String arg : args) {
+            if (arg.startsWith("--out=")) {
+                out = arg.substring("--out=".length());
+            } else if (!generator.option(arg)) {
+                System.err.println("Unknown option: " + arg);
+                System.exit(1);
+            }
+        }
+        String program = generator.generate();
+        if (out == null) {
+            System.out.print(program);
+        } else {
+            Files.write(Paths.get(out), program.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,430 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+// Builds a LirModule straight from the .lir.json form of a program, token by token.
+// Types and instructions are rendered to the same text the LIR file has, so both
+// front ends feed the analyses identical modules.
+//
+// Program   {"structs": {name: [Field]}, "globals": [Var], "functions": {name: Function}, "externs": {name: Type}}
+// Function  {"id", "ret_ty", "params": [Var], "locals": [Var], "body": {label: {"id", "insts": [Inst], "term": Term}}}
+// Var       {"name", "typ", "scope"}, Field {"name", "typ"}
+// Type      "Int" | {"Struct": name} | {"Pointer": Type} | {"Function": {"ret_ty": Type|null, "param_ty": [Type]}}
+// Operand   {"CInt": n} | {"Var": Var}
+class LirJsonLoader {
+
+    private final JsonReader reader;
+    private final LirModule module = new LirModule();
+
+    private LirJsonLoader(JsonReader reader) {
+        this.reader = reader;
+    }
+
+    public static LirModule parse(String filePath) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(filePath), StandardCharsets.UTF_8);
+             JsonReader reader = new JsonReader(in)) {
+            return new LirJsonLoader(reader).program();
+        }
+    }
+
+    private LirModule program() throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "structs":
+                    structs();
+                    break;
+                case "globals":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        String[] global = variable();
+                        module.declarations.add(new LirModule.Global(global[0], global[1]));
+                    }
+                    reader.endArray();
+                    break;
+                case "functions":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        reader.nextName();
+                        module.declarations.add(function());
+                    }
+                    reader.endObject();
+                    break;
+                case "externs":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String name = reader.nextName();
+                        module.declarations.add(new LirModule.Extern(name, type()));
+                    }
+                    reader.endObject();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return module;
+    }
+
+    private void structs() throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            LirModule.Struct struct = new LirModule.Struct(reader.nextName());
+            reader.beginArray();
+            while (reader.hasNext()) {
+                struct.fields.add(variable());
+            }
+            reader.endArray();
+            module.declarations.add(struct);
+        }
+        reader.endObject();
+    }
+
+    private LirModule.Function function() throws IOException {
+        LirModule.Function function = null;
+        List<String[]> params = new ArrayList<>();
+        List<String[]> locals = new ArrayList<>();
+        List<LirModule.Block> blocks = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    function = new LirModule.Function(reader.nextString());
+                    break;
+                case "params":
+                    variables(params);
+                    break;
+                case "locals":
+                    variables(locals);
+                    break;
+                case "body":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        blocks.add(block(reader.nextName()));
+                    }
+                    reader.endObject();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (function == null) {
+            throw new IOException("Malformed LIR JSON: function without id");
+        }
+        function.params.addAll(params);
+        function.locals.addAll(locals);
+        function.blocks.addAll(blocks);
+        return function;
+    }
+
+    private LirModule.Block block(String label) throws IOException {
+        LirModule.Block block = new LirModule.Block(label);
+        String terminal = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "insts":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        block.instructions.add(instruction());
+                    }
+                    reader.endArray();
+                    break;
+                case "term":
+                    terminal = terminal();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (terminal != null) {
+            block.instructions.add(terminal);
+        }
+        return block;
+    }
+
+    private void variables(List<String[]> out) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            out.add(variable());
+        }
+        reader.endArray();
+    }
+
+    // {name, type}
+    private String[] variable() throws IOException {
+        String name = null;
+        String type = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "typ":
+                    type = type();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new String[]{name, type};
+    }
+
+    private String name() throws IOException {
+        return variable()[0];
+    }
+
+    private String type() throws IOException {
+        if (reader.peek() == JsonReader.Token.STRING) {
+            String type = reader.nextString();
+            return type.equals("Int") ? "int" : type;
+        }
+        if (reader.peek() == JsonReader.Token.NULL) {
+            reader.nextNull();
+            return "_";
+        }
+        reader.beginObject();
+        String kind = reader.nextName();
+        String type;
+        switch (kind) {
+            case "Struct":
+                type = reader.nextString();
+                break;
+            case "Pointer":
+                type = "&" + type();
+                break;
+            case "Function":
+                String returnType = "_";
+                List<String> paramTypes = new ArrayList<>();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "ret_ty":
+                            returnType = type();
+                            break;
+                        case "param_ty":
+                            reader.beginArray();
+                            while (reader.hasNext()) {
+                                paramTypes.add(type());
+                            }
+                            reader.endArray();
+                            break;
+                        default:
+                            reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                type = "(" + String.join(", ", paramTypes) + ") -> " + returnType;
+                break;
+            default:
+                throw new IOException("Malformed LIR JSON: unknown type " + kind);
+        }
+        reader.endObject();
+        return type;
+    }
+
+    private String operand() throws IOException {
+        reader.beginObject();
+        String kind = reader.nextName();
+        String operand;
+        if (kind.equals("CInt")) {
+            operand = reader.nextNumber();
+        } else if (kind.equals("Var")) {
+            operand = name();
+        } else {
+            throw new IOException("Malformed LIR JSON: unknown operand " + kind);
+        }
+        reader.endObject();
+        return operand;
+    }
+
+    // Fields of one instruction or terminal object, by name, rendered to LIR text
+    private List<String[]> fields(Field... expected) throws IOException {
+        List<String[]> values = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            Field field = null;
+            for (Field candidate : expected) {
+                if (candidate.name.equals(name)) {
+                    field = candidate;
+                }
+            }
+            if (field == null) {
+                reader.skipValue();
+                continue;
+            }
+            values.add(new String[]{name, value(field.kind)});
+        }
+        reader.endObject();
+        return values;
+    }
+
+    private String value(char kind) throws IOException {
+        if (reader.peek() == JsonReader.Token.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        switch (kind) {
+            case 'v':
+                return name();
+            case 'o':
+                return operand();
+            case 's':
+                return reader.nextString();
+            case 'a':
+                List<String> args = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    args.add(operand());
+                }
+                reader.endArray();
+                return String.join(", ", args);
+            default:
+                throw new IllegalArgumentException("field kind " + kind);
+        }
+    }
+
+    private static String get(List<String[]> values, String name) {
+        for (String[] value : values) {
+            if (value[0].equals(name)) {
+                return value[1];
+            }
+        }
+        return null;
+    }
+
+    private static class Field {
+        final String name;
+        // 'v' variable, 'o' operand, 's' string, 'a' operand list
+        final char kind;
+
+        Field(String name, char kind) {
+            this.name = name;
+            this.kind = kind;
+        }
+    }
+
+    private static Field field(String name, char kind) {
+        return new Field(name, kind);
+    }
+
+    private String instruction() throws IOException {
+        reader.beginObject();
+        String kind = reader.nextName();
+        List<String[]> f;
+        String text;
+        switch (kind) {
+            case "AddrOf":
+                f = fields(field("lhs", 'v'), field("rhs", 'v'));
+                text = get(f, "lhs") + " = $addrof " + get(f, "rhs");
+                break;
+            case "Alloc":
+                f = fields(field("lhs", 'v'), field("num", 'o'), field("id", 'v'));
+                text = get(f, "lhs") + " = $alloc " + get(f, "num") + " [" + get(f, "id") + "]";
+                break;
+            case "Arith":
+                f = fields(field("lhs", 'v'), field("aop", 's'), field("op1", 'o'), field("op2", 'o'));
+                text = get(f, "lhs") + " = $arith " + arithOp(get(f, "aop")) + " " + get(f, "op1") + " " + get(f, "op2");
+                break;
+            case "Cmp":
+                f = fields(field("lhs", 'v'), field("rop", 's'), field("op1", 'o'), field("op2", 'o'));
+                text = get(f, "lhs") + " = $cmp " + compareOp(get(f, "rop")) + " " + get(f, "op1") + " " + get(f, "op2");
+                break;
+            case "CallExt":
+                f = fields(field("lhs", 'v'), field("ext_callee", 'v'), field("args", 'a'));
+                text = assignTo(get(f, "lhs")) + "$call_ext " + get(f, "ext_callee") + "(" + get(f, "args") + ")";
+                break;
+            case "Copy":
+                f = fields(field("lhs", 'v'), field("op", 'o'));
+                text = get(f, "lhs") + " = $copy " + get(f, "op");
+                break;
+            case "Gep":
+                f = fields(field("lhs", 'v'), field("src", 'v'), field("idx", 'o'));
+                text = get(f, "lhs") + " = $gep " + get(f, "src") + " " + get(f, "idx");
+                break;
+            case "Gfp":
+                f = fields(field("lhs", 'v'), field("src", 'v'), field("field", 'v'));
+                text = get(f, "lhs") + " = $gfp " + get(f, "src") + " " + get(f, "field");
+                break;
+            case "Load":
+                f = fields(field("lhs", 'v'), field("src", 'v'));
+                text = get(f, "lhs") + " = $load " + get(f, "src");
+                break;
+            case "Store":
+                f = fields(field("dst", 'v'), field("op", 'o'));
+                text = "$store " + get(f, "dst") + " " + get(f, "op");
+                break;
+            default:
+                throw new IOException("Malformed LIR JSON: unknown instruction " + kind);
+        }
+        reader.endObject();
+        return text;
+    }
+
+    private String terminal() throws IOException {
+        reader.beginObject();
+        String kind = reader.nextName();
+        List<String[]> f;
+        String text;
+        switch (kind) {
+            case "Jump":
+                text = "$jump " + reader.nextString();
+                break;
+            case "Branch":
+                f = fields(field("cond", 'o'), field("tt", 's'), field("ff", 's'));
+                text = "$branch " + get(f, "cond") + " " + get(f, "tt") + " " + get(f, "ff");
+                break;
+            case "Ret":
+                String value = value('o');
+                text = value == null ? "$ret" : "$ret " + value;
+                break;
+            case "CallDirect":
+                f = fields(field("lhs", 'v'), field("callee", 's'), field("args", 'a'), field("next_bb", 's'));
+                text = assignTo(get(f, "lhs")) + "$call_dir " + get(f, "callee") + "(" + get(f, "args") + ") then " + get(f, "next_bb");
+                break;
+            case "CallIndirect":
+                f = fields(field("lhs", 'v'), field("callee", 'v'), field("args", 'a'), field("next_bb", 's'));
+                text = assignTo(get(f, "lhs")) + "$call_idr " + get(f, "callee") + "(" + get(f, "args") + ") then " + get(f, "next_bb");
+                break;
+            default:
+                throw new IOException("Malformed LIR JSON: unknown terminal " + kind);
+        }
+        reader.endObject();
+        return text;
+    }
+
+    private static String assignTo(String lhs) {
+        return lhs == null ? "" : lhs + " = ";
+    }
+
+    private static String arithOp(String op) {
+        switch (op) {
+            case "Add": return "add";
+            case "Subtract": return "sub";
+            case "Multiply": return "mul";
+            case "Divide": return "div";
+            default: return op.toLowerCase();
+        }
+    }
+
+    private static String compareOp(String op) {
+        switch (op) {
+            case "Eq": return "eq";
+            case "Neq": return "neq";
+            case "Less": return "lt";
+            case "LessEq": return "lte";
+            case "Greater": return "gt";
+            case "GreaterEq": return "gte";
+            default: return op.toLowerCase();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Single pass over a memory-mapped LIR file. The current line is just a pair of
+// byte offsets with surrounding whitespace already skipped, so looking at a line
+// allocates nothing; Strings are only made for the pieces the caller keeps.
+class LirLexer {
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int next = 0;
+    // Current line, trimmed: [start, end)
+    private int start = 0;
+    private int end = 0;
+    private byte[] scratch = new byte[256];
+
+    LirLexer(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+    }
+
+    static LirLexer map(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new LirLexer(buffer);
+        }
+    }
+
+    // Moves to the next line that is not blank, false at the end of the file
+    public boolean nextLine() {
+        while (next < limit) {
+            int lineEnd = next;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            start = next;
+            end = lineEnd;
+            next = lineEnd + 1;
+            while (start < end && isSpace(buffer.get(start))) {
+                start++;
+            }
+            while (end > start && isSpace(buffer.get(end - 1))) {
+                end--;
+            }
+            if (start < end) {
+                return true;
+            }
+        }
+        start = end = limit;
+        return false;
+    }
+
+    public int length() {
+        return end - start;
+    }
+
+    // Offsets below are relative to the start of the current line
+    public char charAt(int offset) {
+        return (char) (buffer.get(start + offset) & 0xff);
+    }
+
+    public boolean startsWith(String prefix) {
+        if (prefix.length() > length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int indexOf(char c, int from) {
+        for (int i = from; i < length(); i++) {
+            if (charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // End of the run of word characters (\w) starting at offset
+    public int wordEnd(int offset) {
+        while (offset < length() && isWord(charAt(offset))) {
+            offset++;
+        }
+        return offset;
+    }
+
+    public int skipSpaces(int offset) {
+        while (offset < length() && isSpace((byte) charAt(offset))) {
+            offset++;
+        }
+        return offset;
+    }
+
+    // Closing parenthesis for the one at offset, or the line length if unbalanced
+    public int matchingParen(int open) {
+        int parenthesisLevel = 0;
+        for (int i = open; i < length(); i++) {
+            if (charAt(i) == '(') {
+                parenthesisLevel++;
+            } else if (charAt(i) == ')') {
+                parenthesisLevel--;
+                if (parenthesisLevel == 0) {
+                    return i;
+                }
+            }
+        }
+        return length();
+    }
+
+    // The whole line is one identifier followed by ':'
+    public boolean isLabel() {
+        int colon = wordEnd(0);
+        return colon > 0 && colon == length() - 1 && charAt(colon) == ':';
+    }
+
+    public String text() {
+        return text(0, length());
+    }
+
+    public String text(int from, int to) {
+        int size = to - from;
+        if (size > scratch.length) {
+            scratch = new byte[Math.max(size, scratch.length * 2)];
+        }
+        buffer.get(start + from, scratch, 0, size);
+        return new String(scratch, 0, size, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0b;
+    }
+
+    private static boolean isWord(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
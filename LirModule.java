@@ -0,0 +1,218 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// A whole LIR file, parsed once. Declarations are kept in file order because the
+// analyses build their type tables in that order. Instructions stay as trimmed lines.
+public class LirModule {
+
+    interface Declaration {
+    }
+
+    static class Struct implements Declaration {
+        final String name;
+        final List<String[]> fields = new ArrayList<>();
+
+        Struct(String name) {
+            this.name = name;
+        }
+    }
+
+    static class Global implements Declaration {
+        final String name;
+        final String type;
+
+        Global(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    static class Extern implements Declaration {
+        final String name;
+        final String type;
+
+        Extern(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    static class Function implements Declaration {
+        final String name;
+        // {name, type} pairs
+        final List<String[]> params = new ArrayList<>();
+        final List<String[]> locals = new ArrayList<>();
+        final List<Block> blocks = new ArrayList<>();
+
+        Function(String name) {
+            this.name = name;
+        }
+    }
+
+    static class Block {
+        final String label;
+        final List<String> instructions = new ArrayList<>();
+
+        Block(String label) {
+            this.label = label;
+        }
+    }
+
+    final List<Declaration> declarations = new ArrayList<>();
+    // Types of the declarations, made by the analyses as they read them
+    final LirType.Table types = new LirType.Table();
+
+    public List<Function> getFunctions() {
+        List<Function> functions = new ArrayList<>();
+        for (Declaration declaration : declarations) {
+            if (declaration instanceof Function) {
+                functions.add((Function) declaration);
+            }
+        }
+        return functions;
+    }
+
+    public Function getFunction(String name) {
+        for (Function function : getFunctions()) {
+            if (function.name.equals(name)) {
+                return function;
+            }
+        }
+        return null;
+    }
+
+    // "--all" selects every function in file order, otherwise a comma-separated list of names
+    public List<String> selectFunctions(String selection) {
+        List<String> names = new ArrayList<>();
+        if (selection.equals("--all")) {
+            for (Function function : getFunctions()) {
+                names.add(function.name);
+            }
+        } else {
+            for (String name : selection.split(",")) {
+                if (name.trim().length() != 0) {
+                    names.add(name.trim());
+                }
+            }
+        }
+        return names;
+    }
+
+    // Reads the program named on an analysis command line: the LIR file, or the
+    // JSON file when --frontend=json is given. --cache=<dir> keeps parsed LIR files
+    // in dir and loads them from there while the file content is unchanged; a cache
+    // entry that cannot be written is reported on err.
+    public static LirModule load(String[] args, PrintStream err) throws IOException {
+        String cacheDirectory = null;
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].equals("--frontend=json")) {
+                return LirJsonLoader.parse(args[1]);
+            } else if (args[i].startsWith("--cache=")) {
+                cacheDirectory = args[i].substring("--cache=".length());
+            }
+        }
+        if (cacheDirectory != null) {
+            return new LirModuleCache(cacheDirectory).load(args[0], err);
+        }
+        return parse(args[0]);
+    }
+
+    public static LirModule parse(String filePath) throws IOException {
+        LirModule module = new LirModule();
+        LirLexer lexer = LirLexer.map(filePath);
+        Struct struct = null;
+        Function function = null;
+        Block block = null;
+
+        while (lexer.nextLine()) {
+            if (function != null) {
+                if (lexer.startsWith("}")) {
+                    function = null;
+                    block = null;
+                } else if (lexer.startsWith("let ")) {
+                    parseDeclarations(lexer.text("let ".length(), lexer.length()), function.locals);
+                } else if (lexer.isLabel()) {
+                    //There is a new block
+                    block = new Block(lexer.text(0, lexer.length() - 1));
+                    function.blocks.add(block);
+                } else if (block != null) {
+                    block.instructions.add(lexer.text());
+                }
+            } else if (struct != null) {
+                if (lexer.startsWith("}")) {
+                    struct = null;
+                } else {
+                    String[] field = declaration(lexer, 0);
+                    if (field != null) {
+                        struct.fields.add(field);
+                    }
+                }
+            } else if (lexer.startsWith("fn ")) {
+                // fn name(params) -> type {
+                int nameStart = lexer.skipSpaces("fn ".length());
+                int nameEnd = lexer.wordEnd(nameStart);
+                int open = lexer.skipSpaces(nameEnd);
+                if (nameEnd > nameStart && open < lexer.length() && lexer.charAt(open) == '(') {
+                    function = new Function(lexer.text(nameStart, nameEnd));
+                    parseDeclarations(lexer.text(open + 1, lexer.matchingParen(open)), function.params);
+                    module.declarations.add(function);
+                }
+            } else if (lexer.startsWith("struct ")) {
+                int nameStart = lexer.skipSpaces("struct ".length());
+                int nameEnd = lexer.wordEnd(nameStart);
+                int brace = lexer.skipSpaces(nameEnd);
+                if (nameEnd > nameStart && brace < lexer.length() && lexer.charAt(brace) == '{') {
+                    struct = new Struct(lexer.text(nameStart, nameEnd));
+                    module.declarations.add(struct);
+                }
+            } else if (lexer.startsWith("extern ")) {
+                String[] extern = declaration(lexer, lexer.skipSpaces("extern ".length()));
+                if (extern != null) {
+                    module.declarations.add(new Extern(extern[0], extern[1]));
+                }
+            } else {
+                String[] global = declaration(lexer, 0);
+                if (global != null) {
+                    module.declarations.add(new Global(global[0], global[1]));
+                }
+            }
+        }
+        return module;
+    }
+
+    // name:type starting at offset, with the type running to the end of the line
+    private static String[] declaration(LirLexer lexer, int offset) {
+        int nameEnd = lexer.wordEnd(offset);
+        if (nameEnd == offset || nameEnd >= lexer.length() || lexer.charAt(nameEnd) != ':') {
+            return null;
+        }
+        int typeStart = lexer.skipSpaces(nameEnd + 1);
+        if (typeStart == lexer.length()) {
+            return null;
+        }
+        return new String[]{lexer.text(offset, nameEnd), lexer.text(typeStart, lexer.length())};
+    }
+
+    // "a:int, f:&(int, &int) -> int" -> {a, int}, {f, &(int, &int) -> int}
+    static void parseDeclarations(String declarations, List<String[]> out) {
+        int parenthesisLevel = 0;
+        int start = 0;
+        for (int i = 0; i <= declarations.length(); i++) {
+            char c = i < declarations.length() ? declarations.charAt(i) : ',';
+            if (c == '(') {
+                parenthesisLevel++;
+            } else if (c == ')') {
+                parenthesisLevel--;
+            } else if (c == ',' && parenthesisLevel == 0) {
+                String declaration = declarations.substring(start, i).trim();
+                int colon = declaration.indexOf(':');
+                if (colon > 0) {
+                    out.add(new String[]{declaration.substring(0, colon).trim(), declaration.substring(colon + 1).trim()});
+                }
+                start = i + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Parsed modules stored in a cache directory as <sha-256 of the LIR file>.lirc, so a
+// file that was seen before is loaded from one memory-mapped read instead of parsed.
+//
+// Layout, all ints big-endian:
+//   magic, version
+//   string count, then per string: byte length, UTF-8 bytes
+//   declaration count, then per declaration a kind byte and string indexes:
+//     S name fieldCount (name type)*
+//     G name type
+//     E name type
+//     F name paramCount (name type)* localCount (name type)* blockCount (label instructionCount instruction*)*
+class LirModuleCache {
+
+    private static final int MAGIC = 0x4c495243; // "LIRC"
+    private static final int VERSION = 1;
+
+    private final Path directory;
+
+    LirModuleCache(String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    // A cache entry that cannot be written is reported on err and the parsed module returned
+    public LirModule load(String filePath, PrintStream err) throws IOException {
+        Path cached = directory.resolve(hash(filePath) + ".lirc");
+        if (Files.exists(cached)) {
+            try {
+                return read(cached);
+            } catch (IOException | RuntimeException e) {
+                // Unreadable entry, parse again and overwrite it
+            }
+        }
+        LirModule module = LirModule.parse(filePath);
+        try {
+            write(module, cached);
+        } catch (IOException e) {
+            // The module is parsed, only later runs lose the cache entry
+            err.println("Could not write cache entry " + cached + ": " + e);
+        }
+        return module;
+    }
+
+    static String hash(String filePath) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            digest.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    static LirModule read(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a module cache file: " + file);
+            }
+            String[] strings = new String[count(buffer, 4, file)];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < strings.length; i++) {
+                int length = count(buffer, 1, file);
+                if (length > bytes.length) {
+                    bytes = new byte[length];
+                }
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+
+            LirModule module = new LirModule();
+            int declarations = count(buffer, 1, file);
+            for (int d = 0; d < declarations; d++) {
+                byte kind = buffer.get();
+                switch (kind) {
+                    case 'S':
+                        LirModule.Struct struct = new LirModule.Struct(strings[buffer.getInt()]);
+                        readPairs(buffer, strings, struct.fields, file);
+                        module.declarations.add(struct);
+                        break;
+                    case 'G':
+                        module.declarations.add(new LirModule.Global(strings[buffer.getInt()], strings[buffer.getInt()]));
+                        break;
+                    case 'E':
+                        module.declarations.add(new LirModule.Extern(strings[buffer.getInt()], strings[buffer.getInt()]));
+                        break;
+                    case 'F':
+                        LirModule.Function function = new LirModule.Function(strings[buffer.getInt()]);
+                        readPairs(buffer, strings, function.params, file);
+                        readPairs(buffer, strings, function.locals, file);
+                        int blocks = count(buffer, 8, file);
+                        for (int b = 0; b < blocks; b++) {
+                            LirModule.Block block = new LirModule.Block(strings[buffer.getInt()]);
+                            int instructions = count(buffer, 4, file);
+                            for (int i = 0; i < instructions; i++) {
+                                block.instructions.add(strings[buffer.getInt()]);
+                            }
+                            function.blocks.add(block);
+                        }
+                        module.declarations.add(function);
+                        break;
+                    default:
+                        throw new IOException("Corrupt module cache file: " + file);
+                }
+            }
+            return module;
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated module cache file: " + file, e);
+        }
+    }
+
+    private static void readPairs(ByteBuffer buffer, String[] strings, List<String[]> out, Path file)
+            throws IOException {
+        int count = count(buffer, 8, file);
+        for (int i = 0; i < count; i++) {
+            out.add(new String[]{strings[buffer.getInt()], strings[buffer.getInt()]});
+        }
+    }
+
+    // A count of items of at least size bytes each, checked against what is left of the
+    // file before anything is allocated for it
+    private static int count(ByteBuffer buffer, int size, Path file) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * size > buffer.remaining()) {
+            throw new IOException("Corrupt module cache file: " + file);
+        }
+        return count;
+    }
+
+    // Written next to the target and moved into place, so readers never see half a file
+    static void write(LirModule module, Path file) throws IOException {
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        // Declarations are written before the string table is complete, so they go to memory first
+        ByteArrayOutputStream declarations = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(declarations);
+        body.writeInt(module.declarations.size());
+        for (LirModule.Declaration declaration : module.declarations) {
+            if (declaration instanceof LirModule.Struct) {
+                LirModule.Struct struct = (LirModule.Struct) declaration;
+                body.writeByte('S');
+                body.writeInt(index(struct.name, indexes, strings));
+                writePairs(body, struct.fields, indexes, strings);
+            } else if (declaration instanceof LirModule.Global) {
+                LirModule.Global global = (LirModule.Global) declaration;
+                body.writeByte('G');
+                body.writeInt(index(global.name, indexes, strings));
+                body.writeInt(index(global.type, indexes, strings));
+            } else if (declaration instanceof LirModule.Extern) {
+                LirModule.Extern extern = (LirModule.Extern) declaration;
+                body.writeByte('E');
+                body.writeInt(index(extern.name, indexes, strings));
+                body.writeInt(index(extern.type, indexes, strings));
+            } else if (declaration instanceof LirModule.Function) {
+                LirModule.Function function = (LirModule.Function) declaration;
+                body.writeByte('F');
+                body.writeInt(index(function.name, indexes, strings));
+                writePairs(body, function.params, indexes, strings);
+                writePairs(body, function.locals, indexes, strings);
+                body.writeInt(function.blocks.size());
+                for (LirModule.Block block : function.blocks) {
+                    body.writeInt(index(block.label, indexes, strings));
+                    body.writeInt(block.instructions.size());
+                    for (String instruction : block.instructions) {
+                        body.writeInt(index(instruction, indexes, strings));
+                    }
+                }
+            }
+        }
+
+        Files.createDirectories(file.getParent());
+        Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        boolean moved = false;
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(strings.size());
+                for (String string : strings) {
+                    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                declarations.writeTo(out);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    private static void writePairs(DataOutputStream out, List<String[]> pairs, Map<String, Integer> indexes,
+                                   List<String> strings) throws IOException {
+        out.writeInt(pairs.size());
+        for (String[] pair : pairs) {
+            out.writeInt(index(pair[0], indexes, strings));
+            out.writeInt(index(pair[1], indexes, strings));
+        }
+    }
+
+    private static int index(String string, Map<String, Integer> indexes, List<String> strings) {
+        Integer index = indexes.get(string);
+        if (index == null) {
+            index = strings.size();
+            indexes.put(string, index);
+            strings.add(string);
+        }
+        return index;
+    }
+}
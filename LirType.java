@@ -0,0 +1,210 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Parsed LIR type: int, a struct name, &τ, or (τ1, ..., τn) -> τ.
+// Types are hash-consed in a Table, which each module owns: structurally equal types
+// of one table are the same object, so they compare with == and hash by their id.
+// Ids are dense over the types of the table, which lets type-keyed tables be arrays.
+// int is shared by every table as id 0.
+//
+// Declared type text is parsed once per table; later lookups of the same text are one
+// map get. A table lives as long as its module and the incremental snapshots made from
+// it, so a resident server does not keep the types of every module it has analyzed.
+final class LirType {
+
+    enum Kind {
+        INT, STRUCT, POINTER, FUNCTION
+    }
+
+    static final LirType INT = new LirType(Kind.INT, 0, "int", null, null, Collections.emptyList(), null);
+
+    final Kind kind;
+    final int id;
+    // Struct name
+    final String name;
+    final LirType pointee;
+    final List<LirType> params;
+    final LirType result;
+    private final String text;
+
+    private LirType(Kind kind, int id, String text, String name, LirType pointee, List<LirType> params, LirType result) {
+        this.kind = kind;
+        this.id = id;
+        this.text = text;
+        this.name = name;
+        this.pointee = pointee;
+        this.params = params;
+        this.result = result;
+    }
+
+    // The types of one module. Analyzers of the module share it from several threads.
+    static final class Table {
+        // Canonical text -> type, and every spelling seen so far -> type
+        private final Map<String, LirType> canonical = new ConcurrentHashMap<>();
+        private final Map<String, LirType> parsed = new ConcurrentHashMap<>();
+        private final AtomicInteger ids = new AtomicInteger(1);
+
+        Table() {
+            canonical.put("int", INT);
+        }
+
+        // Number of types made so far, an upper bound on every id
+        int count() {
+            return ids.get();
+        }
+
+        LirType struct(String name) {
+            if (name.equals("int")) {
+                return INT;
+            }
+            return intern(name, () -> new LirType(Kind.STRUCT, ids.getAndIncrement(), name, name, null,
+                    Collections.emptyList(), null));
+        }
+
+        LirType pointer(LirType pointee) {
+            String text = "&" + pointee.text;
+            return intern(text, () -> new LirType(Kind.POINTER, ids.getAndIncrement(), text, null, pointee,
+                    Collections.emptyList(), null));
+        }
+
+        LirType function(List<LirType> params, LirType result) {
+            StringBuilder text = new StringBuilder("(");
+            for (int i = 0; i < params.size(); i++) {
+                if (i > 0) {
+                    text.append(", ");
+                }
+                text.append(params.get(i).text);
+            }
+            text.append(") -> ").append(result.text);
+            List<LirType> copy = Collections.unmodifiableList(new ArrayList<>(params));
+            return intern(text.toString(), () -> new LirType(Kind.FUNCTION, ids.getAndIncrement(), text.toString(),
+                    null, null, copy, result));
+        }
+
+        // The canonical text identifies the structure, so it is the hash-consing key
+        private LirType intern(String text, Supplier<LirType> make) {
+            LirType type = canonical.get(text);
+            return type != null ? type : canonical.computeIfAbsent(text, k -> make.get());
+        }
+
+        // null for empty text
+        LirType parse(String text) {
+            LirType type = parsed.get(text);
+            if (type == null) {
+                String trimmed = text.trim();
+                if (trimmed.isEmpty()) {
+                    return null;
+                }
+                type = new Parser(this, trimmed).type();
+                parsed.putIfAbsent(text, type);
+            }
+            return type;
+        }
+
+        // The type with this canonical text if one was made, without making it
+        LirType existing(String text) {
+            return canonical.get(text);
+        }
+    }
+
+    public boolean isPointer() {
+        return kind == Kind.POINTER;
+    }
+
+    // The function type behind any number of &, or null
+    public LirType function() {
+        LirType type = this;
+        while (type.kind == Kind.POINTER) {
+            type = type.pointee;
+        }
+        return type.kind == Kind.FUNCTION ? type : null;
+    }
+
+    // Whether a pointer appears anywhere in the type
+    public boolean containsPointer() {
+        switch (kind) {
+            case POINTER:
+                return true;
+            case FUNCTION:
+                for (LirType param : params) {
+                    if (param.containsPointer()) {
+                        return true;
+                    }
+                }
+                return result.containsPointer();
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    private static class Parser {
+        private final Table table;
+        private final String text;
+        private int position = 0;
+
+        Parser(Table table, String text) {
+            this.table = table;
+            this.text = text;
+        }
+
+        LirType type() {
+            skipSpaces();
+            if (position >= text.length()) {
+                return INT;
+            }
+            char c = text.charAt(position);
+            if (c == '&') {
+                position++;
+                return table.pointer(type());
+            }
+            if (c == '(') {
+                position++;
+                List<LirType> params = new ArrayList<>();
+                skipSpaces();
+                if (position < text.length() && text.charAt(position) == ')') {
+                    position++;
+                } else {
+                    while (position < text.length()) {
+                        params.add(type());
+                        skipSpaces();
+                        char separator = position < text.length() ? text.charAt(position++) : ')';
+                        if (separator == ')') {
+                            break;
+                        }
+                    }
+                }
+                skipSpaces();
+                if (text.startsWith("->", position)) {
+                    position += 2;
+                }
+                return table.function(params, type());
+            }
+            int start = position;
+            while (position < text.length() && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_')) {
+                position++;
+            }
+            return table.struct(text.substring(start, position));
+        }
+
+        private void skipSpaces() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+    }
+}
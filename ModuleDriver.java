@@ -0,0 +1,128 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Runs one analysis over several functions of a module on a fork-join pool.
+// Every function prints into its own buffers, which are written out in the
+// requested order once all functions are done, so the output does not depend
+// on how the work was scheduled.
+class ModuleDriver {
+
+    interface Analysis {
+        void run(String functionName, PrintStream out, PrintStream err);
+    }
+
+    static void analyze(List<String> functionNames, boolean batch, int parallelism,
+                        PrintStream out, PrintStream err, Analysis analysis) {
+        if (!batch) {
+            for (String name : functionNames) {
+                analysis.run(name, out, err);
+            }
+            return;
+        }
+        int count = functionNames.size();
+        ByteArrayOutputStream[] outs = new ByteArrayOutputStream[count];
+        ByteArrayOutputStream[] errs = new ByteArrayOutputStream[count];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new FunctionTask(functionNames, analysis, outs, errs, 0, count));
+        } finally {
+            pool.shutdown();
+        }
+        for (int i = 0; i < count; i++) {
+            out.println("== " + functionNames.get(i) + " ==");
+            out.print(outs[i].toString());
+            err.print(errs[i].toString());
+        }
+    }
+
+    // Metrics of the analyzed functions in the requested order; a function that
+    // failed before its analyzer was made has none
+    static void writeMetrics(String path, String analysis, String file, long parseNanos, List<String> functionNames,
+                             Map<String, AnalysisMetrics> metrics, PrintStream err) {
+        List<AnalysisMetrics> ordered = new ArrayList<>();
+        for (String name : functionNames) {
+            if (metrics.containsKey(name)) {
+                ordered.add(metrics.get(name));
+            }
+        }
+        try {
+            AnalysisMetrics.write(path, analysis, file, parseNanos, ordered);
+        } catch (IOException e) {
+            err.println("Could not write metrics to " + path + ": " + e.getMessage());
+        }
+    }
+
+    // 0 after reporting a malformed --jobs value
+    static int parseJobs(String[] args, PrintStream err) {
+        return parseJobs(args, 3, err);
+    }
+
+    // The same, for flags starting at args[first]
+    static int parseJobs(String[] args, int first, PrintStream err) {
+        for (int i = first; i < args.length; i++) {
+            if (args[i].startsWith("--jobs=")) {
+                String value = args[i].substring("--jobs=".length());
+                try {
+                    return Math.max(1, Integer.parseInt(value));
+                } catch (NumberFormatException e) {
+                    err.println("Usage: --jobs=<n> takes a number of threads, got: " + value);
+                    return 0;
+                }
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    // Splits the function range in halves down to single functions
+    private static class FunctionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> functionNames;
+        private final Analysis analysis;
+        private final ByteArrayOutputStream[] outs;
+        private final ByteArrayOutputStream[] errs;
+        private final int from;
+        private final int to;
+
+        FunctionTask(List<String> functionNames, Analysis analysis, ByteArrayOutputStream[] outs,
+                     ByteArrayOutputStream[] errs, int from, int to) {
+            this.functionNames = functionNames;
+            this.analysis = analysis;
+            this.outs = outs;
+            this.errs = errs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new FunctionTask(functionNames, analysis, outs, errs, from, middle),
+                        new FunctionTask(functionNames, analysis, outs, errs, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                String name = functionNames.get(i);
+                outs[i] = new ByteArrayOutputStream();
+                errs[i] = new ByteArrayOutputStream();
+                PrintStream out = new PrintStream(outs[i]);
+                PrintStream err = new PrintStream(errs[i]);
+                try {
+                    analysis.run(name, out, err);
+                } catch (RuntimeException | StackOverflowError e) {
+                    // One function's failure, the others still run
+                    err.println(name + ": " + e);
+                }
+                out.flush();
+                err.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.Arrays;
+
+// Immutable abstract state σ : Var → VariableState, stored as a two-level trie of
+// 32-wide chunks. Updating a state copies only the root and the chunks it touches,
+// so a block transfer or a join shares every untouched variable with its input.
+// The VariableState objects held here must never be mutated in place.
+class PersistentState {
+
+    private static final int SHIFT = 5;
+    private static final int CHUNK = 1 << SHIFT;
+    private static final int MASK = CHUNK - 1;
+
+    private final VariableState[][] chunks;
+    private final int size;
+
+    private PersistentState(VariableState[][] chunks, int size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    public static PersistentState of(VariableState[] states) {
+        VariableState[][] chunks = new VariableState[(states.length + MASK) >>> SHIFT][];
+        for (int c = 0; c < chunks.length; c++) {
+            int from = c << SHIFT;
+            int to = Math.min(from + CHUNK, states.length);
+            for (int var = from; var < to; var++) {
+                if (states[var] != null) {
+                    chunks[c] = Arrays.copyOfRange(states, from, from + CHUNK);
+                    break;
+                }
+            }
+        }
+        return new PersistentState(chunks, states.length);
+    }
+
+    // Number of variable slots, present or not
+    public int size() {
+        return size;
+    }
+
+    public VariableState get(int var) {
+        if (var < 0) {
+            return null;
+        }
+        VariableState[] chunk = chunks[var >>> SHIFT];
+        return chunk == null ? null : chunk[var & MASK];
+    }
+
+    public boolean isEmpty() {
+        for (VariableState[] chunk : chunks) {
+            if (chunk != null) {
+                for (VariableState varState : chunk) {
+                    if (varState != null) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    public Editor edit() {
+        return new Editor(this);
+    }
+
+    // σ ⊔ other, per variable. Returns this state itself when other adds nothing, so
+    // callers can detect a change by reference, and only allocates for variables
+    // whose definition points actually grow.
+    public PersistentState join(PersistentState other) {
+        Editor editor = null;
+        for (int c = 0; c < chunks.length; c++) {
+            VariableState[] mine = chunks[c];
+            VariableState[] theirs = other.chunks[c];
+            if (theirs == null || mine == theirs) {
+                continue;
+            }
+            for (int i = 0; i < CHUNK; i++) {
+                VariableState a = mine == null ? null : mine[i];
+                VariableState b = theirs[i];
+                if (b == null || a == b) {
+                    continue;
+                }
+                VariableState merged;
+                if (a == null) {
+                    merged = b;
+                } else if (a.getDefinitionPoints().containsAll(b.getDefinitionPoints())) {
+                    continue;
+                } else {
+                    merged = a.join(b);
+                }
+                if (editor == null) {
+                    editor = edit();
+                }
+                editor.set((c << SHIFT) + i, merged);
+            }
+        }
+        return editor == null ? this : editor.build();
+    }
+
+    // Mutable copy of the state's values, for the per-instruction pass
+    public VariableState[] toArray() {
+        VariableState[] states = new VariableState[size];
+        for (int var = 0; var < size; var++) {
+            VariableState varState = get(var);
+            if (varState != null) {
+                states[var] = varState.clone();
+            }
+        }
+        return states;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof PersistentState)) return false;
+        PersistentState other = (PersistentState) obj;
+        if (size != other.size) return false;
+        for (int c = 0; c < chunks.length; c++) {
+            if (chunks[c] != other.chunks[c] && !Arrays.equals(chunks[c], other.chunks[c])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.deepHashCode(chunks);
+    }
+
+    // Copy-on-write view of a state: each chunk is copied at most once, the first
+    // time one of its variables is set.
+    static class Editor {
+        private final VariableState[][] chunks;
+        private final boolean[] owned;
+        private final int size;
+
+        private Editor(PersistentState base) {
+            this.chunks = base.chunks.clone();
+            this.owned = new boolean[chunks.length];
+            this.size = base.size;
+        }
+
+        public VariableState get(int var) {
+            VariableState[] chunk = chunks[var >>> SHIFT];
+            return chunk == null ? null : chunk[var & MASK];
+        }
+
+        public void set(int var, VariableState varState) {
+            int c = var >>> SHIFT;
+            if (!owned[c]) {
+                chunks[c] = chunks[c] == null ? new VariableState[CHUNK] : chunks[c].clone();
+                owned[c] = true;
+            }
+            chunks[c][var & MASK] = varState;
+        }
+
+        public PersistentState build() {
+            return new PersistentState(chunks, size);
+        }
+    }
+}
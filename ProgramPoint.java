@@ -1,152 +1,173 @@
-import java.util.ArrayList;
-import java.util.List;
-
 public class ProgramPoint {
 
+    public enum Opcode {
+        STORE, LOAD, ALLOC, CMP, GEP, COPY, CALL_EXT, ADDROF, ARITH, GFP, RET, CALL_DIR, CALL_IDR, JUMP, BRANCH, NONE
+    }
+
+    // An LIR line decoded once at parse time. Variables are symbol ids, -1 where the
+    // operand is a constant, a label or otherwise not a variable of the function.
+    public static class Decoded {
+        final Opcode opcode;
+        final int def;
+        final int[] uses;
+        // Calls only: callee name, callee variable for $call_idr, and arguments
+        final String callee;
+        final int calleeVar;
+        final int[] args;
+
+        public Decoded(Opcode opcode, int def, int[] uses, String callee, int calleeVar, int[] args) {
+            this.opcode = opcode;
+            this.def = def;
+            this.uses = uses;
+            this.callee = callee;
+            this.calleeVar = calleeVar;
+            this.args = args;
+        }
+    }
+
+    // Output order of a point packed in one long: the rank of its block among the
+    // function's labels in the high half, its index in the low half, term after every
+    // index. Points that would print the same name get the same key.
+    static long key(int blockRank, int index) {
+        return ((long) blockRank << 32) | index;
+    }
+
+    static long terminalKey(int blockRank) {
+        return ((long) blockRank << 32) | 0xFFFFFFFFL;
+    }
+
+    // A point is a flyweight over its function: the label and line are shared with the
+    // parsed module, the name is made once, and ordering compares the packed key.
     public interface Instruction extends Comparable<Instruction> {
-        List<Instruction> getSuccessors();
-        void addSuccessor(Instruction successor);
         String getBb();
         String getName();
         String getInstructure();
+        long getKey();
+        int getId();
+        void setId(int id);
+        Decoded getDecoded();
+        void setDecoded(Decoded decoded);
+
+        @Override
+        default int compareTo(Instruction other) {
+            return Long.compare(getKey(), other.getKey());
+        }
     }
 
     public static class NonTermInstruction implements Instruction {
-        private String bb;
-        private int index = 0;
-        private String instructure = null;
-
-        private List<Instruction> successors = new ArrayList<>();
-
-        public NonTermInstruction(String bb, int i, String instructure) {
+        private final String bb;
+        private final int index;
+        private final long key;
+        private final String instructure;
+        private int id = -1;
+        private Decoded decoded = null;
+        // bb.index, made once: every reaching definition prints it
+        private String name = null;
+
+        public NonTermInstruction(String bb, int blockRank, int i, String instructure) {
             this.bb = bb;
             this.index = i;
-            this.instructure= instructure;
+            this.key = key(blockRank, i);
+            this.instructure = instructure;
         }
 
-        @Override
-        public int compareTo(Instruction other) {
-            int bbCompare = this.getBb().compareTo(other.getBb());
-            if (bbCompare != 0) {
-                return bbCompare;
-            }
-
-            if(other instanceof Terminal) {
-                return -1;
-            }
+        public String getBb() {
+            return bb;
+        }
 
-            if (other instanceof NonTermInstruction) {
-                NonTermInstruction nonTermOther = (NonTermInstruction) other;
-                Integer res = Integer.compare(this.index, nonTermOther.index);
-                return res;
+        public String getName(){
+            if (name == null) {
+                name = bb + "." + index;
             }
-            return 0;
+            return name;
         }
 
-        @Override
-        public List<Instruction> getSuccessors() {
-            return successors;
+        public long getKey() {
+            return key;
         }
 
-        @Override
-        public void addSuccessor(Instruction successor) {
-            this.successors.add(successor);
+        public int getId() {
+            return id;
         }
 
-        public String getBb() {
-            return bb;
+        public void setId(int id) {
+            this.id = id;
         }
 
-        public String getName(){
-            return bb + "." + index;
+        public Decoded getDecoded() {
+            return decoded;
         }
 
-        public void setBb(String bb) {
-            this.bb = bb;
+        public void setDecoded(Decoded decoded) {
+            this.decoded = decoded;
         }
 
         public int getIndex() {
             return index;
         }
 
-        public void setIndex(int index) {
-            this.index = index;
-        }
-
         public String getInstructure() {
             return instructure;
         }
 
-        public void setInstructure(String instructure) {
-            this.instructure = instructure;
-        }
-
         @Override
         public String toString() {
-            return bb + "." + index;
+            return getName();
         }
     }
 
     public static class Terminal implements Instruction {
-        private String bb;
-
-        private String instructure = null;
-
-        private List<Instruction> successors = new ArrayList<>();
-
-        public Terminal(String bb, String instructure) {
+        private final String bb;
+        private final long key;
+        private final String instructure;
+        private int id = -1;
+        private Decoded decoded = null;
+        private String name = null;
+
+        public Terminal(String bb, int blockRank, String instructure) {
             this.bb = bb;
+            this.key = terminalKey(blockRank);
             this.instructure = instructure;
         }
 
-        @Override
-        public List<Instruction> getSuccessors() {
-            return successors;
-        }
-
-        @Override
-        public void addSuccessor(Instruction successor) {
-            this.successors.add(successor);
+        public String getBb() {
+            return bb;
         }
 
-        @Override
-        public int compareTo(Instruction other) {
-            int bbCompare = this.getBb().compareTo(other.getBb());
-            if (bbCompare != 0) {
-                return bbCompare;
-            }
-
-            if (other instanceof NonTermInstruction) {
-                return 1;
+        public String getName(){
+            if (name == null) {
+                name = bb + ".term";
             }
+            return name;
+        }
 
-            return 0;
+        public long getKey() {
+            return key;
         }
 
+        public int getId() {
+            return id;
+        }
 
-        public String getBb() {
-            return bb;
+        public void setId(int id) {
+            this.id = id;
         }
 
-        public String getName(){
-            return bb + ".term";
+        public Decoded getDecoded() {
+            return decoded;
         }
 
-        public void setBb(String bb) {
-            this.bb = bb;
+        public void setDecoded(Decoded decoded) {
+            this.decoded = decoded;
         }
 
         public String getInstructure() {
             return instructure;
         }
 
-        public void setInstructure(String instructure) {
-            this.instructure = instructure;
-        }
-
         @Override
         public String toString() {
-            return bb + ".term" ;
+            return getName();
         }
     }
 }
@@ -0,0 +1,187 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Runs every .lir file of the given directories against its expected results in one
+// JVM: <name>.rdef.soln for reaching definitions, <name>.dominance.soln for control
+// dominance. Cases run on a thread pool and are reported in file order. Outputs are
+// compared like diff -wB, ignoring whitespace and blank lines.
+//
+// Usage: java RegressionRunner <dir>... [--function=name] [--dominance-function=name] [--jobs=n] [--results=dir]
+// --dominance-function picks the function of the dominance cases, which defaults to
+// --function. With --results, the output of every failing case is written to dir/<name>/.
+public class RegressionRunner {
+
+    static class Case {
+        final File lir;
+        final String kind;
+        final File expected;
+        boolean passed;
+        long nanos;
+        String actual;
+        String firstDifference;
+
+        Case(File lir, String kind, File expected) {
+            this.lir = lir;
+            this.kind = kind;
+            this.expected = expected;
+        }
+
+        String name() {
+            String file = lir.getName();
+            return file.substring(0, file.length() - ".lir".length());
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        List<String> directories = new ArrayList<>();
+        String functionName = "test";
+        String dominanceName = null;
+        int jobs = ModuleDriver.parseJobs(args, 0, System.out);
+        if (jobs == 0) {
+            System.exit(1);
+        }
+        String results = null;
+        for (String arg : args) {
+            if (arg.startsWith("--function=")) {
+                functionName = arg.substring("--function=".length());
+            } else if (arg.startsWith("--dominance-function=")) {
+                dominanceName = arg.substring("--dominance-function=".length());
+            } else if (arg.startsWith("--results=")) {
+                results = arg.substring("--results=".length());
+            } else if (!arg.startsWith("--jobs=")) {
+                directories.add(arg);
+            }
+        }
+        if (directories.isEmpty()) {
+            System.out.println("Usage: java RegressionRunner <dir>... [--function=name] [--dominance-function=name] [--jobs=n] [--results=dir]");
+            System.exit(1);
+        }
+
+        List<Case> cases = new ArrayList<>();
+        for (String directory : directories) {
+            File[] files = new File(directory).listFiles((dir, name) -> name.endsWith(".lir"));
+            if (files == null) {
+                System.out.println("Not a directory: " + directory);
+                continue;
+            }
+            Arrays.sort(files);
+            for (File lir : files) {
+                String base = lir.getPath().substring(0, lir.getPath().length() - ".lir".length());
+                File rdef = new File(base + ".rdef.soln");
+                File dominance = new File(base + ".dominance.soln");
+                if (rdef.exists()) {
+                    cases.add(new Case(lir, "rdef", rdef));
+                }
+                if (dominance.exists()) {
+                    cases.add(new Case(lir, "dominance", dominance));
+                }
+            }
+        }
+
+        String rdefFunction = functionName;
+        String dominanceFunction = dominanceName == null ? functionName : dominanceName;
+        List<Callable<Case>> tasks = new ArrayList<>();
+        for (Case test : cases) {
+            String function = test.kind.equals("rdef") ? rdefFunction : dominanceFunction;
+            tasks.add(() -> run(test, function));
+        }
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(jobs);
+        List<Future<Case>> done;
+        try {
+            done = pool.invokeAll(tasks);
+        } finally {
+            pool.shutdown();
+        }
+
+        int failed = 0;
+        for (int i = 0; i < cases.size(); i++) {
+            Case test = cases.get(i);
+            try {
+                done.get(i).get();
+            } catch (ExecutionException e) {
+                test.passed = false;
+                test.firstDifference = String.valueOf(e.getCause());
+            }
+            System.out.printf("%-40s %-10s %8.1f ms  %s%n", test.lir.getPath(), test.kind, test.nanos / 1e6,
+                    test.passed ? "pass" : "NOT PASS");
+            if (!test.passed) {
+                failed++;
+                System.out.println("    " + test.firstDifference);
+                if (results != null && test.actual != null) {
+                    Path directory = Paths.get(results, test.name());
+                    Files.createDirectories(directory);
+                    Files.write(directory.resolve("my-" + test.name() + "." + test.kind),
+                            test.actual.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        System.out.printf("%d passed, %d failed, %.1f ms%n", cases.size() - failed, failed, (System.nanoTime() - start) / 1e6);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Case run(Case test, String functionName) throws IOException {
+        long start = System.nanoTime();
+        LirModule module = LirModule.parse(test.lir.getPath());
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(buffer, false, StandardCharsets.UTF_8);
+        if (test.kind.equals("rdef")) {
+            DataFlowRdef analyzer = new DataFlowRdef(module, functionName);
+            analyzer.out = out;
+            analyzer.err = out;
+            analyzer.reachingDefinitionAnalysis();
+        } else {
+            DataFlowControl analyzer = new DataFlowControl(module, functionName);
+            analyzer.out = out;
+            analyzer.err = out;
+            analyzer.controlDominanceAnalysis();
+        }
+        out.flush();
+        test.actual = buffer.toString(StandardCharsets.UTF_8);
+        test.nanos = System.nanoTime() - start;
+        compare(test, new String(Files.readAllBytes(test.expected.toPath()), StandardCharsets.UTF_8));
+        return test;
+    }
+
+    private static void compare(Case test, String expected) {
+        List<String> actualLines = normalize(test.actual);
+        List<String> expectedLines = normalize(expected);
+        for (int i = 0; i < Math.max(actualLines.size(), expectedLines.size()); i++) {
+            String actual = i < actualLines.size() ? actualLines.get(i) : "<end of output>";
+            String wanted = i < expectedLines.size() ? expectedLines.get(i) : "<end of output>";
+            if (!actual.equals(wanted)) {
+                test.passed = false;
+                test.firstDifference = "line " + (i + 1) + ": got " + actual + ", expected " + wanted;
+                return;
+            }
+        }
+        test.passed = true;
+    }
+
+    // Lines without whitespace, blank lines dropped
+    private static List<String> normalize(String text) {
+        List<String> lines = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            String compact = line.replaceAll("\\s+", "");
+            if (!compact.isEmpty()) {
+                lines.add(compact);
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,100 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Writes result lines into one large buffer that goes to the channel only when full
+// or flushed, instead of a synchronized println per line. Names and labels are
+// ASCII in practice and are copied byte by byte; any other text is encoded as UTF-8.
+class ResultWriter {
+
+    static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    ResultWriter(OutputStream out) {
+        this(Channels.newChannel(out));
+    }
+
+    ResultWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    // A stream writing to the file through a buffer of the same size, for --output
+    static PrintStream open(String path) throws IOException {
+        FileChannel file = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new PrintStream(new BufferedOutputStream(Channels.newOutputStream(file), BUFFER_SIZE), false,
+                StandardCharsets.UTF_8);
+    }
+
+    ResultWriter append(String text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                return appendBytes(text.substring(i).getBytes(StandardCharsets.UTF_8));
+            }
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) c);
+        }
+        return this;
+    }
+
+    ResultWriter append(char c) {
+        if (c >= 0x80) {
+            return appendBytes(String.valueOf(c).getBytes(StandardCharsets.UTF_8));
+        }
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put((byte) c);
+        return this;
+    }
+
+    ResultWriter newLine() {
+        return appendBytes(LINE_SEPARATOR);
+    }
+
+    private ResultWriter appendBytes(byte[] bytes) {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+        return this;
+    }
+
+    // Writes out the buffer; the channel's own stream is left to its owner
+    void flush() {
+        drain();
+    }
+
+    private void drain() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+}
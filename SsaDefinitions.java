@@ -0,0 +1,311 @@
+import java.util.*;
+
+// Reaching definitions of the locals no pointer can reach, read off SSA form.
+// Such a local is only written by instructions that name it, so σ[x] anywhere is the
+// value of one SSA name: {pp} after a definition, {pp} ∪ the previous name after the
+// weak definition $call_idr makes of its callee, the union of the operands at a φ, and
+// {} on entry. φs are placed on the iterated dominance frontier of the defining blocks
+// (Cytron et al. 1991), only for locals read before being defined in some block
+// (semi-pruned, Briggs et al. 1998), and one walk of the dominator tree names them all.
+//
+// Only values crossing block boundaries are kept: the analysis reads σ at block entry
+// from here and replays each block itself. As in the fixpoint, blocks entry cannot
+// reach are left out, and a local the block cannot see yet is neither read nor written.
+class SsaDefinitions {
+
+    // One SSA name and the definition points its value may come from
+    private static class Name {
+        final int var;
+        final DefinitionSet points = new DefinitionSet();
+        // φ operands, or the name a weak definition adds to
+        final List<Name> operands = new ArrayList<>();
+
+        Name(int var) {
+            this.var = var;
+        }
+    }
+
+    private static final DefinitionSet NONE = new DefinitionSet();
+
+    private final Map<String, Integer> numbers = new HashMap<>();
+    // By block number, in reverse postorder
+    private final List<String> blocks;
+    private final BitSet[] mentioned;
+    private final BitSet[] upwardExposed;
+    private final List<Map<Integer, Name>> entries = new ArrayList<>();
+    private final List<List<Name>> phis = new ArrayList<>();
+    // φs and weak definitions in the order the renaming reached them
+    private final List<Name> equations = new ArrayList<>();
+    private int phiCount = 0;
+    private int nameCount = 0;
+
+    SsaDefinitions(String entry, Map<String, List<ProgramPoint.Instruction>> instructions,
+                   Map<String, List<String>> successors, BitSet variables, Map<String, BitSet> present) {
+        DominatorTree tree = new DominatorTree(entry, instructions.keySet(), successors);
+        blocks = tree.getBlocks();
+        int count = blocks.size();
+        for (int b = 0; b < count; b++) {
+            numbers.put(blocks.get(b), b);
+        }
+        int[] idom = new int[count];
+        List<List<Integer>> children = new ArrayList<>();
+        List<List<Integer>> predecessors = new ArrayList<>();
+        for (int b = 0; b < count; b++) {
+            children.add(new ArrayList<>());
+            predecessors.add(new ArrayList<>());
+            entries.add(new HashMap<>());
+            phis.add(new ArrayList<>());
+        }
+        for (int b = 1; b < count; b++) {
+            idom[b] = numbers.get(tree.getImmediateDominator(blocks.get(b)));
+            children.get(idom[b]).add(b);
+        }
+        for (int b = 0; b < count; b++) {
+            for (String successor : successors.getOrDefault(blocks.get(b), Collections.emptyList())) {
+                predecessors.get(numbers.get(successor)).add(b);
+            }
+        }
+
+        // Dominance frontiers, walking up from the predecessors of each join point.
+        // Entry joins the edges into it with the start of the function, so a block
+        // reaching it is walked up to entry itself.
+        List<List<Integer>> frontiers = new ArrayList<>();
+        for (int b = 0; b < count; b++) {
+            frontiers.add(new ArrayList<>());
+        }
+        for (int b = 0; b < count; b++) {
+            List<Integer> preds = predecessors.get(b);
+            if (b != 0 && preds.size() < 2) {
+                continue;
+            }
+            for (int pred : preds) {
+                int runner = pred;
+                while (b == 0 || runner != idom[b]) {
+                    List<Integer> frontier = frontiers.get(runner);
+                    if (frontier.isEmpty() || frontier.get(frontier.size() - 1) != b) {
+                        frontier.add(b);
+                    }
+                    if (runner == 0) {
+                        break;
+                    }
+                    runner = idom[runner];
+                }
+            }
+        }
+
+        // Blocks defining each local, and the locals some block reads before defining
+        mentioned = new BitSet[count];
+        upwardExposed = new BitSet[count];
+        Map<Integer, BitSet> definingBlocks = new HashMap<>();
+        BitSet exposed = new BitSet();
+        for (int b = 0; b < count; b++) {
+            BitSet visible = present.getOrDefault(blocks.get(b), new BitSet());
+            BitSet locals = (BitSet) variables.clone();
+            locals.and(visible);
+            mentioned[b] = new BitSet();
+            upwardExposed[b] = new BitSet();
+            BitSet defined = new BitSet();
+            for (ProgramPoint.Instruction instruction : instructions.getOrDefault(blocks.get(b), Collections.emptyList())) {
+                ProgramPoint.Decoded decoded = instruction.getDecoded();
+                for (int use : reads(decoded)) {
+                    if (use >= 0 && locals.get(use)) {
+                        mentioned[b].set(use);
+                        if (!defined.get(use)) {
+                            upwardExposed[b].set(use);
+                        }
+                    }
+                }
+                int def = strongDefinition(decoded);
+                if (def >= 0 && locals.get(def)) {
+                    mentioned[b].set(def);
+                    defined.set(def);
+                    definingBlocks.computeIfAbsent(def, k -> new BitSet()).set(b);
+                }
+                int weak = weakDefinition(decoded);
+                if (weak >= 0 && locals.get(weak)) {
+                    definingBlocks.computeIfAbsent(weak, k -> new BitSet()).set(b);
+                }
+            }
+            exposed.or(upwardExposed[b]);
+        }
+
+        // φ placement on the iterated dominance frontier of the defining blocks
+        for (Map.Entry<Integer, BitSet> defining : definingBlocks.entrySet()) {
+            int var = defining.getKey();
+            if (!exposed.get(var)) {
+                continue;
+            }
+            BitSet queued = (BitSet) defining.getValue().clone();
+            BitSet hasPhi = new BitSet();
+            Deque<Integer> pending = new ArrayDeque<>();
+            for (int b = queued.nextSetBit(0); b >= 0; b = queued.nextSetBit(b + 1)) {
+                pending.add(b);
+            }
+            while (!pending.isEmpty()) {
+                for (int frontier : frontiers.get(pending.poll())) {
+                    if (hasPhi.get(frontier)) {
+                        continue;
+                    }
+                    hasPhi.set(frontier);
+                    Name phi = new Name(var);
+                    if (frontier == 0) {
+                        // The value on entry to the function
+                        phi.operands.add(null);
+                    }
+                    phis.get(frontier).add(phi);
+                    phiCount++;
+                    if (!queued.get(frontier)) {
+                        queued.set(frontier);
+                        pending.add(frontier);
+                    }
+                }
+            }
+        }
+
+        rename(instructions, successors, children, exposed);
+        solvePhis();
+    }
+
+    // Names every definition of an exposed local by one preorder walk of the dominator
+    // tree, the current name of each local undone when leaving the subtree
+    private void rename(Map<String, List<ProgramPoint.Instruction>> instructions, Map<String, List<String>> successors,
+                        List<List<Integer>> children, BitSet exposed) {
+        Map<Integer, Name> current = new HashMap<>();
+        // Names replaced by each definition, null for the value on entry
+        List<Integer> undoVars = new ArrayList<>();
+        List<Name> undoNames = new ArrayList<>();
+        int[] marks = new int[blocks.size()];
+        Deque<Integer> walk = new ArrayDeque<>();
+        walk.push(0);
+        while (!walk.isEmpty()) {
+            int b = walk.pop();
+            if (b < 0) {
+                // Leaving the subtree of ~b
+                while (undoVars.size() > marks[~b]) {
+                    int var = undoVars.remove(undoVars.size() - 1);
+                    Name previous = undoNames.remove(undoNames.size() - 1);
+                    if (previous == null) {
+                        current.remove(var);
+                    } else {
+                        current.put(var, previous);
+                    }
+                }
+                continue;
+            }
+            marks[b] = undoVars.size();
+            for (Name phi : phis.get(b)) {
+                define(current, phi, undoVars, undoNames);
+                equations.add(phi);
+            }
+            BitSet read = upwardExposed[b];
+            for (int var = read.nextSetBit(0); var >= 0; var = read.nextSetBit(var + 1)) {
+                entries.get(b).put(var, current.get(var));
+            }
+            BitSet locals = mentioned[b];
+            for (ProgramPoint.Instruction instruction : instructions.getOrDefault(blocks.get(b), Collections.emptyList())) {
+                ProgramPoint.Decoded decoded = instruction.getDecoded();
+                int def = strongDefinition(decoded);
+                if (def >= 0 && locals.get(def) && exposed.get(def)) {
+                    Name name = new Name(def);
+                    name.points.add(instruction.getId());
+                    define(current, name, undoVars, undoNames);
+                }
+                int weak = weakDefinition(decoded);
+                if (weak >= 0 && locals.get(weak) && exposed.get(weak)) {
+                    Name name = new Name(weak);
+                    name.points.add(instruction.getId());
+                    name.operands.add(current.get(weak));
+                    define(current, name, undoVars, undoNames);
+                    equations.add(name);
+                }
+            }
+            for (String successor : successors.getOrDefault(blocks.get(b), Collections.emptyList())) {
+                for (Name phi : phis.get(numbers.get(successor))) {
+                    phi.operands.add(current.get(phi.var));
+                }
+            }
+            walk.push(~b);
+            for (int child : children.get(b)) {
+                walk.push(child);
+            }
+        }
+    }
+
+    private void define(Map<Integer, Name> current, Name name, List<Integer> undoVars, List<Name> undoNames) {
+        undoVars.add(name.var);
+        undoNames.add(current.put(name.var, name));
+        nameCount++;
+    }
+
+    // Least solution of the φ and weak-definition equations. Names were made in
+    // dominator-tree preorder, so only values carried around loops need another round.
+    private void solvePhis() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Name name : equations) {
+                for (Name operand : name.operands) {
+                    if (operand != null && name.points.join(operand.points)) {
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] reads(ProgramPoint.Decoded decoded) {
+        if (decoded.opcode != ProgramPoint.Opcode.CALL_EXT && decoded.opcode != ProgramPoint.Opcode.CALL_DIR
+                && decoded.opcode != ProgramPoint.Opcode.CALL_IDR) {
+            return decoded.uses;
+        }
+        int[] reads = Arrays.copyOf(decoded.args, decoded.args.length + 1);
+        reads[decoded.args.length] = decoded.opcode == ProgramPoint.Opcode.CALL_IDR ? decoded.calleeVar : -1;
+        return reads;
+    }
+
+    // The variable an instruction sets to {pp}, or -1
+    private static int strongDefinition(ProgramPoint.Decoded decoded) {
+        switch (decoded.opcode) {
+            case LOAD:
+            case ALLOC:
+            case CMP:
+            case ARITH:
+            case GEP:
+            case GFP:
+            case COPY:
+            case CALL_EXT:
+            case CALL_DIR:
+            case CALL_IDR:
+            case ADDROF:
+                return decoded.def;
+            default:
+                return -1;
+        }
+    }
+
+    // The callee of $call_idr gains pp on top of what it held, or -1
+    private static int weakDefinition(ProgramPoint.Decoded decoded) {
+        return decoded.opcode == ProgramPoint.Opcode.CALL_IDR ? decoded.calleeVar : -1;
+    }
+
+    // Locals of the sparse partition that instructions of the block name
+    BitSet variables(String block) {
+        Integer b = numbers.get(block);
+        return b == null ? new BitSet() : mentioned[b];
+    }
+
+    // σ[var] on entry to the block; only meaningful when the block reads var before defining it
+    DefinitionSet atEntry(String block, int var) {
+        Integer b = numbers.get(block);
+        Name name = b == null ? null : entries.get(b).get(var);
+        return name == null ? NONE : name.points;
+    }
+
+    int getPhiCount() {
+        return phiCount;
+    }
+
+    int getNameCount() {
+        return nameCount;
+    }
+}
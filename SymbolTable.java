@@ -0,0 +1,53 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Interns variable names to dense ints so abstract states can be plain arrays.
+// Locals are named <function name>.<id>, globals <id> and heap variables fake_<type>.
+class SymbolTable {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    // Returns -1 for names that were never interned
+    public int lookup(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public boolean contains(String name) {
+        return ids.containsKey(name);
+    }
+
+    public String getName(int id) {
+        return names.get(id);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    // Same names with the same ids
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof SymbolTable)) return false;
+        return names.equals(((SymbolTable) obj).names);
+    }
+
+    @Override
+    public int hashCode() {
+        return names.hashCode();
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.*;
+
+// Transitive closure of the reachable-type graph. ReachableTypes records for every
+// type the types it directly reaches (pointee, parameters, struct fields); struct
+// fields can point back at their struct, so the graph may have cycles.
+//
+// The closure is the least solution of R(t) ⊇ direct(t) and R(t) ⊇ R(s) \ {t} for
+// s ∈ R(t), which is direct(t) plus every type reachable from t other than t itself.
+// It is computed on the condensation: Tarjan's algorithm finds the strongly connected
+// components sinks first, so each component's closure is built once from the
+// closures of the components it points to.
+//
+// Closures are cached by their input graph. Struct layouts and declared types rarely
+// differ between the functions of a module, or between incremental runs that share a
+// type table, so most analyzers reuse a closure computed for an earlier one. Both the key and the closure are stored
+// as unmodifiable copies, since the closure is shared by every analyzer that asks.
+class TypeClosure {
+
+    private static final int CACHE_SIZE = 64;
+    private static final Map<Map<LirType, Set<LirType>>, Map<LirType, Set<LirType>>> cache =
+            new LinkedHashMap<Map<LirType, Set<LirType>>, Map<LirType, Set<LirType>>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Map<LirType, Set<LirType>>, Map<LirType, Set<LirType>>> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    // The closure returned is read-only
+    static Map<LirType, Set<LirType>> close(Map<LirType, Set<LirType>> direct) {
+        Map<LirType, Set<LirType>> key = readOnlyCopy(direct);
+        synchronized (cache) {
+            Map<LirType, Set<LirType>> cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // compute already makes each set unmodifiable and keeps no reference to the map
+        Map<LirType, Set<LirType>> closure = Collections.unmodifiableMap(compute(key));
+        synchronized (cache) {
+            cache.put(key, closure);
+        }
+        return closure;
+    }
+
+    // Struct fields may have no type, so the copy keeps null where Map.copyOf would not
+    private static Map<LirType, Set<LirType>> readOnlyCopy(Map<LirType, Set<LirType>> graph) {
+        Map<LirType, Set<LirType>> copy = new HashMap<>();
+        for (Map.Entry<LirType, Set<LirType>> entry : graph.entrySet()) {
+            copy.put(entry.getKey(), Collections.unmodifiableSet(new HashSet<>(entry.getValue())));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    static Map<LirType, Set<LirType>> compute(Map<LirType, Set<LirType>> direct) {
+        // Types that are only reached get a node too, without edges
+        List<LirType> nodes = new ArrayList<>();
+        Map<LirType, Integer> ids = new HashMap<>();
+        for (Map.Entry<LirType, Set<LirType>> entry : direct.entrySet()) {
+            id(entry.getKey(), nodes, ids);
+            for (LirType target : entry.getValue()) {
+                id(target, nodes, ids);
+            }
+        }
+        int[][] successors = new int[nodes.size()][];
+        for (int node = 0; node < nodes.size(); node++) {
+            Set<LirType> targets = direct.getOrDefault(nodes.get(node), Collections.emptySet());
+            successors[node] = new int[targets.size()];
+            int i = 0;
+            for (LirType target : targets) {
+                successors[node][i++] = ids.get(target);
+            }
+        }
+
+        List<int[]> components = new ArrayList<>();
+        int[] component = stronglyConnectedComponents(successors, components);
+
+        // Everything reachable in one or more steps from a member of each component
+        BitSet[] reach = new BitSet[components.size()];
+        for (int c = 0; c < components.size(); c++) {
+            BitSet reached = new BitSet(nodes.size());
+            int[] members = components.get(c);
+            for (int node : members) {
+                for (int target : successors[node]) {
+                    reached.set(target);
+                    if (component[target] != c) {
+                        reached.or(reach[component[target]]);
+                    }
+                }
+            }
+            // Inside a cycle every member reaches every other one
+            if (members.length > 1) {
+                for (int node : members) {
+                    reached.set(node);
+                }
+            }
+            reach[c] = reached;
+        }
+
+        Map<LirType, Set<LirType>> closure = new HashMap<>();
+        for (Map.Entry<LirType, Set<LirType>> entry : direct.entrySet()) {
+            LirType type = entry.getKey();
+            int node = ids.get(type);
+            Set<LirType> types = new HashSet<>(entry.getValue());
+            BitSet reached = reach[component[node]];
+            for (int target = reached.nextSetBit(0); target >= 0; target = reached.nextSetBit(target + 1)) {
+                if (target != node) {
+                    types.add(nodes.get(target));
+                }
+            }
+            closure.put(type, Collections.unmodifiableSet(types));
+        }
+        return closure;
+    }
+
+    private static void id(LirType type, List<LirType> nodes, Map<LirType, Integer> ids) {
+        if (!ids.containsKey(type)) {
+            ids.put(type, nodes.size());
+            nodes.add(type);
+        }
+    }
+
+    // Tarjan's algorithm without recursion, type graphs of generated code can be deep.
+    // Components are added to the list sinks first; returns the component of each node.
+    private static int[] stronglyConnectedComponents(int[][] successors, List<int[]> components) {
+        int count = successors.length;
+        int[] index = new int[count];
+        int[] lowLink = new int[count];
+        int[] component = new int[count];
+        boolean[] onStack = new boolean[count];
+        Arrays.fill(index, -1);
+        int[] stack = new int[count];
+        int stackSize = 0;
+        int[] callNode = new int[count];
+        int[] callEdge = new int[count];
+        int nextIndex = 0;
+
+        for (int root = 0; root < count; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            callNode[0] = root;
+            callEdge[0] = 0;
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (depth >= 0) {
+                int node = callNode[depth];
+                if (callEdge[depth] < successors[node].length) {
+                    int target = successors[node][callEdge[depth]++];
+                    if (index[target] < 0) {
+                        index[target] = lowLink[target] = nextIndex++;
+                        stack[stackSize++] = target;
+                        onStack[target] = true;
+                        depth++;
+                        callNode[depth] = target;
+                        callEdge[depth] = 0;
+                    } else if (onStack[target]) {
+                        lowLink[node] = Math.min(lowLink[node], index[target]);
+                    }
+                    continue;
+                }
+                if (lowLink[node] == index[node]) {
+                    int start = stackSize;
+                    do {
+                        start--;
+                    } while (stack[start] != node);
+                    int[] members = Arrays.copyOfRange(stack, start, stackSize);
+                    for (int member : members) {
+                        onStack[member] = false;
+                        component[member] = components.size();
+                    }
+                    components.add(members);
+                    stackSize = start;
+                }
+                depth--;
+                if (depth >= 0) {
+                    int parent = callNode[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+            }
+        }
+        return component;
+    }
+}
@@ -1,40 +1,34 @@
-import java.util.HashSet;
 import java.util.Objects;
-import java.util.Set;
 
 class VariableState{
 
-    Set<ProgramPoint.Instruction> definitionPoints = new HashSet<>();
+    DefinitionSet definitionPoints = new DefinitionSet();
     String pointsTo = null;
-    String type = null;
+    LirType type = null;
 
 
     public void setPointsTo(String pointsTo) {
         this.pointsTo = pointsTo;
     }
 
-    public String getType() {
+    public LirType getType() {
         return this.type;
     }
 
     public void setDefinitionPoint(ProgramPoint.Instruction instruction) {
-        Set<ProgramPoint.Instruction> newlist = new HashSet<>();
-        newlist.add(instruction);
-        this.definitionPoints = newlist;
+        this.definitionPoints.set(instruction.getId());
     }
 
     public void addDefinitionPoint(ProgramPoint.Instruction instruction) {
-        this.definitionPoints.add(instruction);
+        this.definitionPoints.add(instruction.getId());
     }
 
-    public void addAllDefinitionPoint(Set<ProgramPoint.Instruction> instructions) {
-        for (ProgramPoint.Instruction instruction : instructions) {
-            this.definitionPoints.add(instruction);
-        }
+    public void addAllDefinitionPoint(DefinitionSet instructions) {
+        this.definitionPoints.join(instructions);
     }
 
     // Getter for definitionPoints
-    public Set<ProgramPoint.Instruction> getDefinitionPoints() {
+    public DefinitionSet getDefinitionPoints() {
         return this.definitionPoints;
     }
 
@@ -47,7 +41,7 @@ class VariableState{
         VariableState newState = new VariableState();
         newState.pointsTo = this.pointsTo;
         newState.type = this.type;
-        newState.definitionPoints = new HashSet<>(this.definitionPoints);
+        newState.definitionPoints = this.definitionPoints.copy();
         return newState;
     }
 
@@ -59,6 +53,14 @@ class VariableState{
         return newState;
     }
 
+    public VariableState copyNew(DefinitionSet definitionPoints) {
+        VariableState newState = new VariableState();
+        newState.definitionPoints = definitionPoints;
+        newState.pointsTo = this.pointsTo;
+        newState.type = this.type;
+        return newState;
+    }
+
 
     @Override
     public boolean equals(Object obj) {
@@ -70,6 +72,11 @@ class VariableState{
                 type == other.type;
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(definitionPoints, pointsTo, type);
+    }
+
     public VariableState join(VariableState other) {
         VariableState result = this.clone();
 
@@ -78,7 +85,7 @@ class VariableState{
         return result;
     }
 
-    public void setType(String type) {
+    public void setType(LirType type) {
         this.type = type;
     }
 
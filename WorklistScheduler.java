@@ -0,0 +1,230 @@
+import java.io.PrintStream;
+import java.util.*;
+
+// Worklist that always hands out the pending block that comes first in a
+// control-flow order, instead of the alphabetically smallest label.
+// Pending blocks are a bitset over the order, so add/contains are O(1).
+class WorklistScheduler {
+
+    enum Order {
+        // Reverse postorder of a DFS from entry, predecessors before successors except on back edges
+        REVERSE_POSTORDER,
+        // Bourdoncle's weak topological order: every loop head comes right before its body,
+        // so a loop is stabilized before the blocks after it are visited again
+        WEAK_TOPOLOGICAL;
+
+        static Order parse(String name) {
+            switch (name) {
+                case "rpo":
+                    return REVERSE_POSTORDER;
+                case "wto":
+                    return WEAK_TOPOLOGICAL;
+                default:
+                    throw new IllegalArgumentException("Unknown iteration order: " + name);
+            }
+        }
+    }
+
+    private final Map<String, Integer> ranks = new HashMap<>();
+    private final List<String> order = new ArrayList<>();
+    private final BitSet pending = new BitSet();
+    private int[] visits;
+
+    public WorklistScheduler(String entry, Collection<String> blocks, Map<String, List<String>> successors, Order order) {
+        List<String> reachable = order == Order.WEAK_TOPOLOGICAL
+                ? weakTopologicalOrder(entry, successors)
+                : reversePostorder(entry, successors);
+        for (String block : reachable) {
+            addRank(block);
+        }
+        // Blocks not reachable from entry still get a place, after every reachable one
+        for (String block : blocks) {
+            addRank(block);
+        }
+        this.visits = new int[this.order.size()];
+    }
+
+    private void addRank(String block) {
+        if (!ranks.containsKey(block)) {
+            ranks.put(block, order.size());
+            order.add(block);
+        }
+    }
+
+    public void add(String block) {
+        pending.set(rank(block));
+    }
+
+    public boolean contains(String block) {
+        Integer rank = ranks.get(block);
+        return rank != null && pending.get(rank);
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    public String poll() {
+        int rank = pending.nextSetBit(0);
+        if (rank < 0) {
+            return null;
+        }
+        pending.clear(rank);
+        visits[rank]++;
+        return order.get(rank);
+    }
+
+    public List<String> getOrder() {
+        return Collections.unmodifiableList(order);
+    }
+
+    public int getVisits(String block) {
+        Integer rank = ranks.get(block);
+        return rank == null ? 0 : visits[rank];
+    }
+
+    public int getTotalVisits() {
+        int total = 0;
+        for (int count : visits) {
+            total += count;
+        }
+        return total;
+    }
+
+    public void printVisits(PrintStream out) {
+        for (String block : order) {
+            out.println(block + ": " + getVisits(block));
+        }
+        out.println("total: " + getTotalVisits());
+    }
+
+    private int rank(String block) {
+        Integer rank = ranks.get(block);
+        if (rank == null) {
+            addRank(block);
+            rank = order.size() - 1;
+            visits = Arrays.copyOf(visits, order.size());
+        }
+        return rank;
+    }
+
+    static List<String> reversePostorder(String entry, Map<String, List<String>> successors) {
+        LinkedList<String> postorder = new LinkedList<>();
+        Set<String> visited = new HashSet<>();
+        Deque<String> stack = new ArrayDeque<>();
+        Deque<Iterator<String>> edges = new ArrayDeque<>();
+        visited.add(entry);
+        stack.push(entry);
+        edges.push(successors.getOrDefault(entry, Collections.emptyList()).iterator());
+        while (!stack.isEmpty()) {
+            Iterator<String> next = edges.peek();
+            if (next.hasNext()) {
+                String successor = next.next();
+                if (visited.add(successor)) {
+                    stack.push(successor);
+                    edges.push(successors.getOrDefault(successor, Collections.emptyList()).iterator());
+                }
+            } else {
+                edges.pop();
+                postorder.addFirst(stack.pop());
+            }
+        }
+        return postorder;
+    }
+
+    static List<String> weakTopologicalOrder(String entry, Map<String, List<String>> successors) {
+        return new Bourdoncle(successors).run(entry);
+    }
+
+    // Strongly connected component walk from Bourdoncle, "Efficient chaotic iteration
+    // strategies with widenings" (1993), flattened to a single list. The recursion of
+    // visit and component runs on an explicit stack of frames, so a long path through
+    // the CFG does not need one thread stack frame per block. The partition is built
+    // back to front: every prepend of the recursive version is an append here.
+    private static class Bourdoncle {
+        private final Map<String, List<String>> successors;
+        private final Map<String, Integer> dfn = new HashMap<>();
+        private final Deque<String> stack = new ArrayDeque<>();
+        private int num = 0;
+
+        // One call of visit, which becomes the call of component for a loop head
+        private static class Frame {
+            final String vertex;
+            final List<String> successors;
+            int next = 0;
+            int head;
+            boolean loop = false;
+            boolean component = false;
+
+            Frame(String vertex, List<String> successors, int head) {
+                this.vertex = vertex;
+                this.successors = successors;
+                this.head = head;
+            }
+
+            void lower(int min) {
+                if (min <= head) {
+                    head = min;
+                    loop = true;
+                }
+            }
+        }
+
+        Bourdoncle(Map<String, List<String>> successors) {
+            this.successors = successors;
+        }
+
+        List<String> run(String entry) {
+            List<String> reversed = new ArrayList<>();
+            Deque<Frame> calls = new ArrayDeque<>();
+            calls.push(enter(entry));
+            while (!calls.isEmpty()) {
+                Frame frame = calls.peek();
+                if (frame.next < frame.successors.size()) {
+                    String successor = frame.successors.get(frame.next++);
+                    int successorDfn = dfn.getOrDefault(successor, 0);
+                    if (successorDfn == 0) {
+                        // Its head lowers this frame's when it returns
+                        calls.push(enter(successor));
+                    } else if (!frame.component) {
+                        frame.lower(successorDfn);
+                    }
+                    continue;
+                }
+                boolean finished = frame.component;
+                if (!frame.component && frame.head == dfn.get(frame.vertex)) {
+                    dfn.put(frame.vertex, Integer.MAX_VALUE);
+                    String element = stack.pop();
+                    if (frame.loop) {
+                        while (!element.equals(frame.vertex)) {
+                            dfn.put(element, 0);
+                            element = stack.pop();
+                        }
+                        // Walk the successors again as the component of this head
+                        frame.component = true;
+                        frame.next = 0;
+                        continue;
+                    }
+                    finished = true;
+                }
+                calls.pop();
+                if (finished) {
+                    reversed.add(frame.vertex);
+                }
+                Frame caller = calls.peek();
+                if (caller != null && !caller.component) {
+                    caller.lower(frame.head);
+                }
+            }
+            Collections.reverse(reversed);
+            return reversed;
+        }
+
+        private Frame enter(String vertex) {
+            stack.push(vertex);
+            num++;
+            dfn.put(vertex, num);
+            return new Frame(vertex, successors.getOrDefault(vertex, Collections.emptyList()), num);
+        }
+    }
+}
@@ -2,5 +2,5 @@
 
 set -e
 
-# assuming you used a Makefile
-make
+cd "$(dirname "$0")"
+javac -encoding UTF-8 *.java
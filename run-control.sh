@@ -9,5 +9,12 @@ LIR_FILE="$1"
 JSON_FILE="$2"
 FUNCTION_NAME="$3"
 
-javac DataFlowControl.java State.java ProgramPoint.java VariableState.java
-java DataFlowControl "$LIR_FILE" "$JSON_FILE" "$FUNCTION_NAME"
\ No newline at end of file
+# Compile once, then only when a source file changed
+if [ ! -f DataFlowControl.class ] || [ -n "$(find . -maxdepth 1 -name '*.java' -newer DataFlowControl.class)" ]; then
+    ./build-analyses.sh
+fi
+# With a running server (java AnalysisServer --socket=$DATAFLOW_SOCKET) the query skips the cold analysis JVM
+if [ -n "$DATAFLOW_SOCKET" ] && [ -S "$DATAFLOW_SOCKET" ]; then
+    exec java AnalysisClient control "$LIR_FILE" "$JSON_FILE" "$FUNCTION_NAME" "${@:4}"
+fi
+java DataFlowControl "$LIR_FILE" "$JSON_FILE" "$FUNCTION_NAME" "${@:4}"
\ No newline at end of file
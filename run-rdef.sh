@@ -10,8 +10,15 @@ LIR_FILE="$1"
 JSON_FILE="$2"
 FUNCTION_NAME="$3"
 
-javac DataFlowRdef.java State.java ProgramPoint.java VariableState.java
-java DataFlowRdef "$LIR_FILE" "$JSON_FILE" "$FUNCTION_NAME"
+# Compile once, then only when a source file changed
+if [ ! -f DataFlowRdef.class ] || [ -n "$(find . -maxdepth 1 -name '*.java' -newer DataFlowRdef.class)" ]; then
+    ./build-analyses.sh
+fi
+# With a running server (java AnalysisServer --socket=$DATAFLOW_SOCKET) the query skips the cold analysis JVM
+if [ -n "$DATAFLOW_SOCKET" ] && [ -S "$DATAFLOW_SOCKET" ]; then
+    exec java AnalysisClient rdef "$LIR_FILE" "$JSON_FILE" "$FUNCTION_NAME" "${@:4}"
+fi
+java DataFlowRdef "$LIR_FILE" "$JSON_FILE" "$FUNCTION_NAME" "${@:4}"
 
 #if [ -f "$LIR_FILE" ]; then
 #    javac DataFlowControl.java State.java VariableState.java
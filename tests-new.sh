@@ -1,29 +1,7 @@
 #!/bin/bash
 
-TEST_DIR="./interval"
-OUTPUT_DIR="my-results"
-
-mkdir -p "$OUTPUT_DIR"
-
-# Loop through each .lir file in the directory
-for file in "$TEST_DIR"/*.lir; do
-    filename=$(basename "${file%.lir}")
-    output_dir="$OUTPUT_DIR/$filename"
-
-    mkdir -p "$output_dir"
-
-    json_file="$output_dir/${filename}.lir.json"
-    #    stats_file="${file%.lir}.dominance.soln"
-        stats_file="${file%.lir}.redf.soln"
-    output_stats="$output_dir/my-$filename"
-    diff_output="$output_dir/diff.txt"
-
-    ./run-rdef.sh "$file" "$json_file" "test"> "$output_stats"
-    diff -wp "$output_stats" "$stats_file" > "$diff_output"
-
-    if [ -s "$diff_output" ]; then
-        echo "Processed $file - NOT PASS >>>>>>>>>>>>>>>>>>>>>>>>>>>>>>"
-    else
-        echo "Processed $file - pass"
-    fi
-done
\ No newline at end of file
+# All cases run in one JVM on a thread pool, compared against each .rdef.soln and
+# .dominance.soln. Outputs of failing cases are kept in my-results/<name>/.
+cd "$(dirname "$0")"
+./build-analyses.sh
+java RegressionRunner ./interval --function=test --results=my-results "$@"